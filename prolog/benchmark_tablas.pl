@@ -0,0 +1,105 @@
+% Comparacion de las reglas recursivas con y sin tablas, usada por TablingBenchmark.java
+% Cada carga de trabajo repite el patron de una consulta de inference_engine.pl
+
+:- module_transparent
+    es_subclase_sin_tablas/2, hereda_sin_tablas/2, subclase/3, herencia/3,
+    propiedades_de_prueba/2, generos_de_prueba/2, ejecutar_carga/3, medir/2,
+    comparar_tablas/5.
+
+% Reglas sin tablas, iguales a las versiones anteriores de es_subclase_de/2
+% y hereda_propiedad/2
+es_subclase_sin_tablas(Hijo, Padre) :-
+    frame(Hijo, subclase_de(Padre), _, _).
+
+es_subclase_sin_tablas(Hijo, Ancestro) :-
+    frame(Hijo, subclase_de(Padre), _, _),
+    es_subclase_sin_tablas(Padre, Ancestro).
+
+hereda_sin_tablas(Clase, Propiedad) :-
+    frame(Clase, _, Propiedades, _),
+    member(Propiedad, Propiedades).
+
+hereda_sin_tablas(Clase, Propiedad) :-
+    frame(Clase, subclase_de(Padre), _, _),
+    Padre \= top,
+    hereda_sin_tablas(Padre, Propiedad).
+
+subclase(con_tablas, Hijo, Ancestro) :- es_subclase_de(Hijo, Ancestro).
+subclase(sin_tablas, Hijo, Ancestro) :- es_subclase_sin_tablas(Hijo, Ancestro).
+
+herencia(con_tablas, Clase, Propiedad) :- hereda_propiedad(Clase, Propiedad).
+herencia(sin_tablas, Clase, Propiedad) :- hereda_sin_tablas(Clase, Propiedad).
+
+% Las primeras N propiedades y los primeros N generos, en orden estandar
+propiedades_de_prueba(N, Propiedades) :-
+    todas_propiedades(Todas),
+    length(Todas, Total),
+    Cantidad is min(N, Total),
+    length(Propiedades, Cantidad),
+    append(Propiedades, _, Todas).
+
+generos_de_prueba(N, Generos) :-
+    obtener_todos_los_generos(Todos),
+    length(Todos, Total),
+    Cantidad is min(N, Total),
+    length(Generos, Cantidad),
+    append(Generos, _, Todos).
+
+% Cargas de trabajo; el resultado es el numero de respuestas distintas, que
+% debe ser el mismo con y sin tablas
+ejecutar_carga(clases_con_propiedad, Modo, Total) :-
+    propiedades_de_prueba(10, Propiedades),
+    findall(P-C, (member(P, Propiedades), herencia(Modo, C, P)), Respuestas),
+    sort(Respuestas, Distintas),
+    length(Distintas, Total).
+
+ejecutar_carga(todas_las_propiedades, Modo, Total) :-
+    obtener_todos_los_generos(Generos),
+    findall(C-P, (member(C, Generos), herencia(Modo, C, P)), Respuestas),
+    sort(Respuestas, Distintas),
+    length(Distintas, Total).
+
+ejecutar_carga(subgeneros_de, Modo, Total) :-
+    generos_de_prueba(20, Generos),
+    findall(G-S, (member(G, Generos), subclase(Modo, S, G)), Respuestas),
+    sort(Respuestas, Distintas),
+    length(Distintas, Total).
+
+ejecutar_carga(jerarquias, Modo, Total) :-
+    obtener_todos_los_generos(Generos),
+    findall(C-A, (member(C, Generos), subclase(Modo, C, A)), Respuestas),
+    sort(Respuestas, Distintas),
+    length(Distintas, Total).
+
+ejecutar_carga(clases_por_coincidencias, Modo, Total) :-
+    propiedades_de_prueba(3, Propiedades),
+    obtener_todos_los_generos(Generos),
+    findall(Contador-C, (
+        member(C, Generos),
+        findall(P, (member(P, Propiedades), herencia(Modo, C, P)), Encontradas),
+        length(Encontradas, Contador),
+        Contador > 0
+    ), Respuestas),
+    sort(Respuestas, Distintas),
+    length(Distintas, Total).
+
+% Tiempo de CPU de un objetivo en milisegundos
+medir(Objetivo, Milisegundos) :-
+    statistics(cputime, Inicio),
+    call(Objetivo),
+    statistics(cputime, Fin),
+    Milisegundos is round((Fin - Inicio) * 1000).
+
+% Ejecuta una carga sin tablas, con las tablas vacias y con las tablas ya
+% llenas. Resultados es el numero de respuestas, o distintos(SinTablas,
+% ConTablas) si no coinciden.
+comparar_tablas(Carga, MsSinTablas, MsTablasVacias, MsTablasLlenas, Resultados) :-
+    context_module(Modulo),
+    medir(ejecutar_carga(Carga, sin_tablas, SinTablas), MsSinTablas),
+    invalidar_tablas(Modulo),
+    medir(ejecutar_carga(Carga, con_tablas, ConTablas), MsTablasVacias),
+    medir(ejecutar_carga(Carga, con_tablas, _), MsTablasLlenas),
+    (   SinTablas =:= ConTablas
+    ->  Resultados = SinTablas
+    ;   Resultados = distintos(SinTablas, ConTablas)
+    ).
@@ -1,22 +1,124 @@
 % Motor de inferencia para el sistema de frames de géneros musicales
 
-% Consulta si un frame es subclase de otro (transitivo)
-es_subclase_de(Hijo, Padre) :-
-    frame(Hijo, subclase_de(Padre), _, _).
+% call_with_time_limit/2 limita el tiempo de cada consulta hecha desde Java
+:- use_module(library(time)).
 
+% Las reglas se cargan una sola vez en el modulo user y son module_transparent:
+% una llamada como kb_region:tiene_propiedad(P, L) busca frame/4 en kb_region,
+% asi varias bases de conocimiento comparten las mismas reglas.
+:- module_transparent
+    es_subclase_de/2, hereda_propiedad/2, todas_las_propiedades/2,
+    clases_con_propiedad/2, clases_que_usan_instrumento/2, clases_por_tempo/3,
+    clases_por_origen/2, clases_por_decada/2, clases_por_caracteristica/2,
+    descripcion_clase/2, jerarquia_clase/2, jerarquia_aux/3, subgeneros_de/2,
+    arbol_taxonomico/1, total_generos/1, generos_por_instrumento/1,
+    clases_con_todas_propiedades/2, clases_con_alguna_propiedad/2,
+    tiene_todas_propiedades/2, contar_propiedades_clase/3,
+    clases_por_coincidencias/2, patron_propiedades/2.
+
+% Hechos que pertenecen a cada base de conocimiento
+hecho_de_base(frame/4).
+hecho_de_base(instrumento/1).
+hecho_de_base(pais/1).
+hecho_de_base(ciudad/1).
+hecho_de_base(decada/1).
+hecho_de_base(caracteristica_musical/1).
+
+% Cargar una base de conocimiento en su propio modulo. Los hechos se declaran
+% dinamicos en el modulo para que no se hereden los de user, y se leen termino
+% a termino para poder cargar el mismo archivo en varios modulos.
+cargar_base_en_modulo(Archivo, Modulo) :-
+    descargar_base_de_modulo(Modulo),
+    setup_call_cleanup(
+        open(Archivo, read, Flujo, [encoding(utf8)]),
+        cargar_terminos(Flujo, Modulo),
+        close(Flujo)),
+    invalidar_tablas(Modulo).
+
+cargar_terminos(Flujo, Modulo) :-
+    read_term(Flujo, Termino, []),
+    (   Termino == end_of_file
+    ->  true
+    ;   (   Termino = (:- _)
+        ->  true
+        ;   assertz(Modulo:Termino)
+        ),
+        cargar_terminos(Flujo, Modulo)
+    ).
+
+% Vaciar los hechos de una base de conocimiento cargada en un modulo
+descargar_base_de_modulo(Modulo) :-
+    forall(hecho_de_base(Nombre/Aridad), (
+        Modulo:dynamic(Nombre/Aridad),
+        functor(Cabeza, Nombre, Aridad),
+        retractall(Modulo:Cabeza)
+    )),
+    invalidar_tablas(Modulo).
+
+% Las tablas de las reglas recursivas se calculan una vez por base de
+% conocimiento. Los predicados tabulados no pueden ser module_transparent,
+% porque la tabla no distingue el modulo que hace la llamada, asi que
+% reciben el modulo como primer argumento. Las tablas son compartidas entre
+% hilos, ya que Java consulta desde varios motores a la vez.
+:- table ancestro_en/3 as shared.
+:- table descendiente_en/3 as shared.
+:- table propiedad_heredada_en/3 as shared.
+
+% Descartar las tablas de una base de conocimiento; se llama al cargarla,
+% al descargarla y desde Java despues de cada consult
+invalidar_tablas(Modulo) :-
+    abolish_table_subgoals(ancestro_en(Modulo, _, _)),
+    abolish_table_subgoals(descendiente_en(Modulo, _, _)),
+    abolish_table_subgoals(propiedad_heredada_en(Modulo, _, _)).
+
+% Consulta si un frame es subclase de otro (transitivo). Con el hijo conocido
+% se usa la tabla de sus ancestros, con el ancestro conocido la de sus
+% descendientes; las tablas siempre se piden con el otro argumento libre
+% para que haya una sola tabla por genero y la compartan sus descendientes.
 es_subclase_de(Hijo, Ancestro) :-
-    frame(Hijo, subclase_de(Padre), _, _),
-    es_subclase_de(Padre, Ancestro).
+    context_module(Modulo),
+    (   nonvar(Hijo)
+    ->  ancestro_en(Modulo, Hijo, A),
+        A = Ancestro
+    ;   nonvar(Ancestro)
+    ->  descendiente_en(Modulo, Ancestro, Hijo)
+    ;   Modulo:frame(Hijo, _, _, _),
+        ancestro_en(Modulo, Hijo, Ancestro)
+    ).
 
-% Herencia de propiedades
+ancestro_en(Modulo, Hijo, Padre) :-
+    Modulo:frame(Hijo, subclase_de(Padre), _, _).
+
+ancestro_en(Modulo, Hijo, Ancestro) :-
+    Modulo:frame(Hijo, subclase_de(Padre), _, _),
+    ancestro_en(Modulo, Padre, Ancestro).
+
+descendiente_en(Modulo, Padre, Hijo) :-
+    Modulo:frame(Hijo, subclase_de(Padre), _, _).
+
+descendiente_en(Modulo, Ancestro, Descendiente) :-
+    Modulo:frame(Hijo, subclase_de(Ancestro), _, _),
+    descendiente_en(Modulo, Hijo, Descendiente).
+
+% Herencia de propiedades: la tabla de cada clase guarda todas sus
+% propiedades, propias y heredadas, y la de su padre se reutiliza
 hereda_propiedad(Clase, Propiedad) :-
-    frame(Clase, _, Propiedades, _),
+    context_module(Modulo),
+    (   var(Clase)
+    ->  Modulo:frame(Clase, _, _, _)
+    ;   true
+    ),
+    propiedad_heredada_en(Modulo, Clase, P),
+    P = Propiedad.
+
+propiedad_heredada_en(Modulo, Clase, Propiedad) :-
+    Modulo:frame(Clase, _, Propiedades, _),
     member(Propiedad, Propiedades).
 
-hereda_propiedad(Clase, Propiedad) :-
-    frame(Clase, subclase_de(Padre), _, _),
+propiedad_heredada_en(Modulo, Clase, Propiedad) :-
+    Modulo:frame(Clase, subclase_de(Padre), _, _),
     Padre \= top,
-    hereda_propiedad(Padre, Propiedad).
+    propiedad_heredada_en(Modulo, Padre, Propiedad).
 
 % Consultar todas las propiedades de una clase (incluyendo herencia)
 todas_las_propiedades(Clase, TodasPropiedades) :-
@@ -68,13 +170,17 @@ clases_por_caracteristica(Caracteristica, Clases) :-
 descripcion_clase(Clase, Descripcion) :-
     frame(Clase, _, _, Descripcion).
 
-% Obtener jerarquía completa de una clase
+% Obtener jerarquía completa de una clase. El acumulador guarda las clases
+% ya visitadas: si los padres forman un ciclo el recorrido se corta al
+% volver a una de ellas en lugar de no terminar nunca.
 jerarquia_clase(Clase, Jerarquia) :-
     jerarquia_aux(Clase, [], Jerarquia).
 
 jerarquia_aux(top, Acc, Acc) :- !.
+jerarquia_aux(Clase, Acc, Acc) :-
+    memberchk(Clase, Acc), !.
 jerarquia_aux(Clase, Acc, Jerarquia) :-
-    frame(Clase, subclase_de(Padre), _, _),
+    once(frame(Clase, subclase_de(Padre), _, _)),
     jerarquia_aux(Padre, [Clase|Acc], Jerarquia).
 
 % Obtener todos los subgéneros de un género
@@ -101,19 +207,10 @@ generos_por_instrumento(Estadisticas) :-
     msort(InstrumentosList, InstrumentosOrdenados),
     contar_instrumentos(InstrumentosOrdenados, Estadisticas).
 
-% Auxiliar para contar instrumentos
-contar_instrumentos([], []).
-contar_instrumentos([Instrumento|Rest], [Instrumento-Count|Stats]) :-
-    contar_ocurrencias(Instrumento, [Instrumento|Rest], Count, Remaining),
-    contar_instrumentos(Remaining, Stats).
-
-contar_ocurrencias(_, [], 0, []).
-contar_ocurrencias(X, [X|Rest], Count, Remaining) :-
-    contar_ocurrencias(X, Rest, Count1, Remaining),
-    Count is Count1 + 1.
-contar_ocurrencias(X, [Y|Rest], Count, [Y|Remaining]) :-
-    X \= Y,
-    contar_ocurrencias(X, Rest, Count, Remaining).
+% Auxiliar para contar instrumentos: la lista ya viene ordenada por msort,
+% asi que clumped/2 agrupa las repeticiones en una sola pasada
+contar_instrumentos(InstrumentosOrdenados, Estadisticas) :-
+    clumped(InstrumentosOrdenados, Estadisticas).
 
 % Buscar clases que tengan TODAS las propiedades especificadas
 clases_con_todas_propiedades([], Clases) :-
@@ -1,5 +1,14 @@
 % Consultas especificas para la interfaz grafica
 
+% Reglas compartidas entre bases de conocimiento, ver inference_engine.pl
+:- module_transparent
+    inicializar_sistema/0, obtener_todos_los_generos/1, info_completa_genero/2,
+    busqueda_avanzada/2, cumple_criterios/2, cumple_criterio/2,
+    exportar_datos_json/1, obtener_sugerencias/2, info_detallada_genero/2,
+    propiedades_formateadas/2, clases/1, propiedadesc/2, superclases_de/2,
+    todas_propiedades/1, obtiene_descripcion/2, tiene_propiedad/2,
+    buscar_propiedad_formateada/2.
+
 % Inicializacion del sistema
 inicializar_sistema :-
     write('Sistema de taxonomia musical inicializado'), nl,
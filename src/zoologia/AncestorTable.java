@@ -0,0 +1,166 @@
+package zoologia;
+
+import zoologia.FrameStorage.IntColumn;
+
+/**
+ * Depth, lowest common ancestor and tree distance of genres, answered in
+ * O(log n) by binary lifting. Level k of the table holds the 2^k-th ancestor
+ * of every genre, so any ancestor is reached in one jump per bit of the
+ * distance. The virtual root "top" is depth 0 and is the common ancestor of
+ * genres in different top-level trees.
+ *
+ * Ancestors follow the parents of the TaxonomyIndex, in which every
+ * subclase_de cycle has already been cut at one top-level frame.
+ */
+public class AncestorTable {
+
+    /** Ancestor id that stands for the virtual root "top" */
+    public static final int VIRTUAL_ROOT = TaxonomyIndex.NO_PARENT;
+
+    private final IntColumn depths;
+    private final IntColumn[] ancestorLevels;
+
+    /**
+     * Builds the table with the storage backend selected by the zoologia.storage system property
+     * @param taxonomyIndex the taxonomy to index
+     */
+    public AncestorTable(TaxonomyIndex taxonomyIndex) {
+        this(taxonomyIndex, FrameStorage.fromSystemProperty());
+    }
+
+    /**
+     * Builds the table
+     * @param taxonomyIndex the taxonomy to index
+     * @param storage the backend that holds the table columns
+     */
+    public AncestorTable(TaxonomyIndex taxonomyIndex, FrameStorage storage) {
+        int genreCount = taxonomyIndex.size();
+        int[] depths = new int[genreCount];
+        int[] parents = new int[genreCount];
+        int maxDepth = 0;
+
+        // In preorder every parent comes before its children
+        for (int position = 0; position < genreCount; position++) {
+            int genreId = taxonomyIndex.genreAtPreorder(position);
+            int parentId = taxonomyIndex.parentOf(genreId);
+            if (parentId != TaxonomyIndex.NO_PARENT) {
+                parents[genreId] = parentId;
+                depths[genreId] = depths[parentId] + 1;
+            } else {
+                parents[genreId] = VIRTUAL_ROOT;
+                depths[genreId] = 1;
+            }
+            maxDepth = Math.max(maxDepth, depths[genreId]);
+        }
+
+        int levelCount = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxDepth));
+        this.depths = storage.intColumn(depths);
+        this.ancestorLevels = new IntColumn[levelCount];
+        int[] previousLevel = parents;
+        ancestorLevels[0] = storage.intColumn(parents);
+        for (int level = 1; level < levelCount; level++) {
+            int[] currentLevel = new int[genreCount];
+            for (int genreId = 0; genreId < genreCount; genreId++) {
+                int halfway = previousLevel[genreId];
+                currentLevel[genreId] = halfway == VIRTUAL_ROOT ? VIRTUAL_ROOT : previousLevel[halfway];
+            }
+            ancestorLevels[level] = storage.intColumn(currentLevel);
+            previousLevel = currentLevel;
+        }
+    }
+
+    /**
+     * Gets the depth of a genre
+     * @param genreId the id of the genre
+     * @return the number of steps from the virtual root; top-level genres are at depth 1
+     */
+    public int depthOf(int genreId) {
+        return genreId == VIRTUAL_ROOT ? 0 : depths.get(genreId);
+    }
+
+    /**
+     * Gets the ancestor a number of levels above a genre
+     * @param genreId the id of the genre
+     * @param steps how many levels to go up
+     * @return the ancestor id, or VIRTUAL_ROOT if the genre is not that deep
+     */
+    public int ancestorOf(int genreId, int steps) {
+        if (steps >= depthOf(genreId)) {
+            return VIRTUAL_ROOT;
+        }
+        int ancestorId = genreId;
+        for (int level = 0; steps > 0; level++, steps >>= 1) {
+            if ((steps & 1) != 0) {
+                ancestorId = ancestorLevels[level].get(ancestorId);
+            }
+        }
+        return ancestorId;
+    }
+
+    /**
+     * Finds the deepest genre that is an ancestor of both genres, or one of them
+     * @param firstGenreId the id of the first genre
+     * @param secondGenreId the id of the second genre
+     * @return the common ancestor id, or VIRTUAL_ROOT if they only meet at "top"
+     */
+    public int lowestCommonAncestor(int firstGenreId, int secondGenreId) {
+        int first = firstGenreId;
+        int second = secondGenreId;
+        if (depthOf(first) < depthOf(second)) {
+            first = secondGenreId;
+            second = firstGenreId;
+        }
+        first = ancestorOf(first, depthOf(first) - depthOf(second));
+        if (first == second) {
+            return first;
+        }
+        for (int level = ancestorLevels.length - 1; level >= 0; level--) {
+            int firstAncestor = ancestorLevels[level].get(first);
+            int secondAncestor = ancestorLevels[level].get(second);
+            if (firstAncestor != secondAncestor) {
+                first = firstAncestor;
+                second = secondAncestor;
+            }
+        }
+        return ancestorLevels[0].get(first);
+    }
+
+    /**
+     * Gets the number of parent-child steps between two genres through their common ancestor
+     * @param firstGenreId the id of the first genre
+     * @param secondGenreId the id of the second genre
+     * @return the tree distance, 0 for the same genre
+     */
+    public int distance(int firstGenreId, int secondGenreId) {
+        int ancestorId = lowestCommonAncestor(firstGenreId, secondGenreId);
+        return depthOf(firstGenreId) + depthOf(secondGenreId) - 2 * depthOf(ancestorId);
+    }
+
+    /**
+     * Finds the common ancestor of many pairs at once
+     * @param firstGenreIds the first genre of each pair
+     * @param secondGenreIds the second genre of each pair, same length as firstGenreIds
+     * @return the common ancestor id of each pair, VIRTUAL_ROOT where they only meet at "top"
+     */
+    public int[] lowestCommonAncestors(int[] firstGenreIds, int[] secondGenreIds) {
+        int[] ancestorIds = new int[firstGenreIds.length];
+        for (int i = 0; i < ancestorIds.length; i++) {
+            ancestorIds[i] = lowestCommonAncestor(firstGenreIds[i], secondGenreIds[i]);
+        }
+        return ancestorIds;
+    }
+
+    /**
+     * Gets the tree distance of many pairs at once
+     * @param firstGenreIds the first genre of each pair
+     * @param secondGenreIds the second genre of each pair, same length as firstGenreIds
+     * @return the distance of each pair
+     */
+    public int[] distances(int[] firstGenreIds, int[] secondGenreIds) {
+        int[] distances = new int[firstGenreIds.length];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = distance(firstGenreIds[i], secondGenreIds[i]);
+        }
+        return distances;
+    }
+}
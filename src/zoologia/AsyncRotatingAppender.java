@@ -0,0 +1,207 @@
+package zoologia;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends lines to a log file from a background thread. Callers only offer
+ * the line to a lock-free queue, so a slow disk never holds up a query;
+ * when the queue is full the line is dropped and counted instead.
+ * The file is rotated when it grows past a size limit: log, log.1, ...,
+ * log.N, with the oldest file deleted.
+ */
+public class AsyncRotatingAppender {
+
+    private final File file;
+    private final long maxFileBytes;
+    private final int maxBackupFiles;
+    private final String header;
+    private final int queueCapacity;
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedLines = new AtomicInteger();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final AtomicLong writtenLines = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private Writer writer;
+    private long fileBytes;
+
+    /**
+     * Creates an appender and starts its writer thread
+     * @param file the log file
+     * @param maxFileBytes the size at which the file is rotated
+     * @param maxBackupFiles how many rotated files to keep
+     * @param header a line written at the top of every new file, or null
+     * @param queueCapacity how many lines may wait for the writer before new ones are dropped
+     */
+    public AsyncRotatingAppender(File file, long maxFileBytes, int maxBackupFiles, String header, int queueCapacity) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxBackupFiles = maxBackupFiles;
+        this.header = header;
+        this.queueCapacity = queueCapacity;
+        this.writerThread = new Thread(this::writeLoop, "slow-query-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /**
+     * Queues a line for writing without blocking
+     * @param line the line, without a line terminator
+     * @return true if the line was queued, false if the queue was full or the appender closed
+     */
+    public boolean append(String line) {
+        if (closed || queuedLines.incrementAndGet() > queueCapacity) {
+            queuedLines.decrementAndGet();
+            droppedLines.incrementAndGet();
+            return false;
+        }
+        queue.offer(line);
+        LockSupport.unpark(writerThread);
+        return true;
+    }
+
+    /**
+     * Gets the number of lines dropped because the queue was full
+     * @return the dropped line count
+     */
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    /**
+     * Gets the number of lines written to disk
+     * @return the written line count
+     */
+    public long getWrittenLines() {
+        return writtenLines.get();
+    }
+
+    /**
+     * Stops accepting lines, writes the queued ones and closes the file
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Drains the queue, flushing whenever it runs empty
+     */
+    private void writeLoop() {
+        while (true) {
+            String line = queue.poll();
+            if (line != null) {
+                queuedLines.decrementAndGet();
+                write(line);
+                continue;
+            }
+            flush();
+            if (closed) {
+                if (queue.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+        }
+        closeWriter();
+    }
+
+    private void write(String line) {
+        try {
+            if (writer == null) {
+                openWriter();
+            }
+            byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            if (fileBytes > 0 && fileBytes + bytes.length > maxFileBytes) {
+                rotate();
+            }
+            writer.write(line);
+            writer.write(System.lineSeparator());
+            fileBytes += bytes.length;
+            writtenLines.incrementAndGet();
+        } catch (IOException e) {
+            System.err.println("Error writing to " + file + ": " + e.getMessage());
+            droppedLines.incrementAndGet();
+            closeWriter();
+        }
+    }
+
+    private void openWriter() throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+        fileBytes = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        if (fileBytes == 0 && header != null) {
+            writer.write(header);
+            writer.write(System.lineSeparator());
+            fileBytes += (header + System.lineSeparator()).getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+
+    /**
+     * Shifts log.i to log.(i+1), dropping the oldest, and starts a new file
+     */
+    private void rotate() throws IOException {
+        closeWriter();
+        File oldest = new File(file.getPath() + "." + maxBackupFiles);
+        if (oldest.exists()) {
+            oldest.delete();
+        }
+        for (int i = maxBackupFiles - 1; i >= 1; i--) {
+            File backup = new File(file.getPath() + "." + i);
+            if (backup.exists()) {
+                backup.renameTo(new File(file.getPath() + "." + (i + 1)));
+            }
+        }
+        if (maxBackupFiles > 0) {
+            file.renameTo(new File(file.getPath() + ".1"));
+        } else {
+            file.delete();
+        }
+        openWriter();
+    }
+
+    private void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Error flushing " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + file + ": " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package zoologia;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Inverted index over the description of every genre, ranked with BM25.
+ * Text is folded to lowercase without accents, so "improvisacion" finds
+ * "improvisación" and the other way round, and common Spanish words are
+ * left out. Each term keeps a posting list of genre ids with the number of
+ * times the term appears, sorted by genre id. The postings are heap arrays
+ * under either FrameStorage backend.
+ */
+public class DescriptionSearchIndex {
+
+    /** BM25 term frequency saturation */
+    private static final float K1 = 1.2f;
+
+    /** BM25 length normalization */
+    private static final float B = 0.75f;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "al", "con", "como", "de", "del", "el", "en", "es", "esta", "este", "la", "las", "lo", "los",
+        "mas", "o", "para", "por", "que", "se", "sin", "su", "sus", "un", "una", "uno", "unos", "unas", "y"));
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final int[] postingOffsets;
+    private final int[] postingGenreIds;
+    private final int[] postingFrequencies;
+    private final float[] lengthNorms;
+    private final int genreCount;
+
+    /**
+     * Tokenizes every description and builds the posting lists
+     * @param taxonomyIndex the taxonomy whose descriptions are indexed
+     */
+    public DescriptionSearchIndex(TaxonomyIndex taxonomyIndex) {
+        this.genreCount = taxonomyIndex.size();
+
+        // Term ids of each description, sorted so equal terms are adjacent
+        int[][] genreTerms = new int[genreCount][];
+        int[] documentFrequencies = new int[1024];
+        long totalLength = 0;
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            List<String> tokens = tokenize(taxonomyIndex.descriptionOf(genreId));
+            int[] terms = new int[tokens.size()];
+            for (int i = 0; i < terms.length; i++) {
+                Integer termId = termIds.get(tokens.get(i));
+                if (termId == null) {
+                    termId = termIds.size();
+                    termIds.put(tokens.get(i), termId);
+                    if (termId == documentFrequencies.length) {
+                        documentFrequencies = Arrays.copyOf(documentFrequencies, termId * 2);
+                    }
+                }
+                terms[i] = termId;
+            }
+            Arrays.sort(terms);
+            for (int i = 0; i < terms.length; i++) {
+                if (i == 0 || terms[i] != terms[i - 1]) {
+                    documentFrequencies[terms[i]]++;
+                }
+            }
+            genreTerms[genreId] = terms;
+            totalLength += terms.length;
+        }
+
+        // Posting lists in one array, filled in genre id order
+        int termCount = termIds.size();
+        this.postingOffsets = new int[termCount + 1];
+        for (int termId = 0; termId < termCount; termId++) {
+            postingOffsets[termId + 1] = postingOffsets[termId] + documentFrequencies[termId];
+        }
+        this.postingGenreIds = new int[postingOffsets[termCount]];
+        this.postingFrequencies = new int[postingOffsets[termCount]];
+        int[] nextPosting = Arrays.copyOf(postingOffsets, termCount);
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            int[] terms = genreTerms[genreId];
+            for (int start = 0; start < terms.length; ) {
+                int end = start;
+                while (end < terms.length && terms[end] == terms[start]) {
+                    end++;
+                }
+                int posting = nextPosting[terms[start]]++;
+                postingGenreIds[posting] = genreId;
+                postingFrequencies[posting] = end - start;
+                start = end;
+            }
+        }
+
+        // K1 * (1 - B + B * length / average length), the part of the BM25 denominator fixed per genre
+        this.lengthNorms = new float[genreCount];
+        float averageLength = genreCount == 0 ? 0 : Math.max(1, (float) totalLength / genreCount);
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            lengthNorms[genreId] = K1 * (1 - B + B * genreTerms[genreId].length / averageLength);
+        }
+    }
+
+    /**
+     * Finds the genres whose descriptions best match the query words
+     * @param queryText the words to search for, in any case and with or without accents
+     * @param limit the maximum number of results
+     * @return the matches, best first
+     */
+    public Match[] search(String queryText, int limit) {
+        Set<Integer> queryTerms = new HashSet<>();
+        for (String token : tokenize(queryText)) {
+            Integer termId = termIds.get(token);
+            if (termId != null) {
+                queryTerms.add(termId);
+            }
+        }
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new Match[0];
+        }
+
+        float[] scores = new float[genreCount];
+        int[] matchedGenres = new int[genreCount];
+        int matchedCount = 0;
+        for (int termId : queryTerms) {
+            int documentFrequency = postingOffsets[termId + 1] - postingOffsets[termId];
+            float idf = (float) Math.log(1 + (genreCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            for (int posting = postingOffsets[termId]; posting < postingOffsets[termId + 1]; posting++) {
+                int genreId = postingGenreIds[posting];
+                int frequency = postingFrequencies[posting];
+                if (scores[genreId] == 0) {
+                    matchedGenres[matchedCount++] = genreId;
+                }
+                scores[genreId] += idf * frequency * (K1 + 1) / (frequency + lengthNorms[genreId]);
+            }
+        }
+
+        // Keep the best matches in a min-heap of the result size
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1,
+            (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Integer.compare(b, a));
+        for (int i = 0; i < matchedCount; i++) {
+            int genreId = matchedGenres[i];
+            if (best.size() == limit && scores[genreId] <= scores[best.peek()]) {
+                continue;
+            }
+            best.add(genreId);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        Match[] matches = new Match[best.size()];
+        for (int i = matches.length - 1; i >= 0; i--) {
+            int genreId = best.poll();
+            matches[i] = new Match(genreId, scores[genreId]);
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the number of distinct indexed words
+     * @return the vocabulary size
+     */
+    public int termCount() {
+        return termIds.size();
+    }
+
+    /**
+     * Splits text into lowercase words without accents, leaving out stop words
+     * and single characters
+     * @param text the text to split
+     * @return the words, in order
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= decomposed.length(); i++) {
+            char c = i < decomposed.length() ? decomposed.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                String word = token.toString();
+                if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+                    tokens.add(word);
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * A genre and its BM25 score
+     */
+    public static final class Match {
+
+        private final int genreId;
+        private final double score;
+
+        Match(int genreId, double score) {
+            this.genreId = genreId;
+            this.score = score;
+        }
+
+        public int getGenreId() {
+            return genreId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package zoologia;
+
+import java.util.HashMap;
+import java.util.Map;
+import zoologia.FrameStorage.StringColumn;
+
+/**
+ * Display text for every genre and property in the knowledge base,
+ * computed once per load and looked up by id. The property prefixes
+ * follow formatear_propiedad/2 in queries.pl. The labels are kept in
+ * FrameStorage columns, so they leave the heap with the index columns.
+ */
+public class DisplayLabels {
+
+    private static final Map<String, String> PROPERTY_PREFIXES = new HashMap<>();
+
+    static {
+        PROPERTY_PREFIXES.put("usa", "Usa instrumento: ");
+        PROPERTY_PREFIXES.put("origen_pais", "Origen pais: ");
+        PROPERTY_PREFIXES.put("origen_decada", "Origen decada: ");
+        PROPERTY_PREFIXES.put("origen_ciudad", "Origen ciudad: ");
+        PROPERTY_PREFIXES.put("caracteristica", "Caracteristica: ");
+        PROPERTY_PREFIXES.put("tempo_bpm", "Tempo BPM: ");
+        PROPERTY_PREFIXES.put("tempo_max", "Tempo maximo: ");
+        PROPERTY_PREFIXES.put("energia", "Nivel de energia: ");
+        PROPERTY_PREFIXES.put("complejidad", "Complejidad: ");
+        PROPERTY_PREFIXES.put("duracion", "Duracion: ");
+        PROPERTY_PREFIXES.put("volumen", "Volumen: ");
+        PROPERTY_PREFIXES.put("estructura", "Estructura: ");
+        PROPERTY_PREFIXES.put("publico", "Publico objetivo: ");
+        PROPERTY_PREFIXES.put("mensaje", "Tipo de mensaje: ");
+        PROPERTY_PREFIXES.put("actitud", "Actitud: ");
+        PROPERTY_PREFIXES.put("produccion", "Tipo de produccion: ");
+        PROPERTY_PREFIXES.put("fusion", "Fusion de estilos: ");
+        PROPERTY_PREFIXES.put("influencia", "Influencia de: ");
+        PROPERTY_PREFIXES.put("cultura", "Cultura asociada: ");
+        PROPERTY_PREFIXES.put("autenticidad", "Nivel de autenticidad: ");
+        PROPERTY_PREFIXES.put("innovacion", "Nivel de innovacion: ");
+        PROPERTY_PREFIXES.put("tradicion", "Tradicion: ");
+        PROPERTY_PREFIXES.put("estilo", "Estilo: ");
+        PROPERTY_PREFIXES.put("funcion", "Funcion: ");
+        PROPERTY_PREFIXES.put("lider", "Lider del movimiento: ");
+        PROPERTY_PREFIXES.put("emocion", "Emocion principal: ");
+        PROPERTY_PREFIXES.put("tema", "Tematica: ");
+        PROPERTY_PREFIXES.put("accesibilidad", "Accesibilidad: ");
+        PROPERTY_PREFIXES.put("diversidad", "Diversidad: ");
+        PROPERTY_PREFIXES.put("comercialidad", "Comercialidad: ");
+        PROPERTY_PREFIXES.put("creatividad", "Creatividad: ");
+        PROPERTY_PREFIXES.put("expresion", "Expresion: ");
+        PROPERTY_PREFIXES.put("instrumentos", "Instrumentos: ");
+        PROPERTY_PREFIXES.put("origen_region", "Region de origen: ");
+        PROPERTY_PREFIXES.put("origen_periodo", "Periodo de origen: ");
+        PROPERTY_PREFIXES.put("transmision", "Transmision: ");
+        PROPERTY_PREFIXES.put("origen", "Origen: ");
+        PROPERTY_PREFIXES.put("necesita", "Necesita: ");
+        PROPERTY_PREFIXES.put("tiene", "Tiene: ");
+    }
+
+    private final StringColumn genreLabels;
+    private final StringColumn propertyLabels;
+
+    /**
+     * Computes the labels with the storage backend selected by the zoologia.storage system property
+     * @param taxonomyIndex the taxonomy to label
+     */
+    public DisplayLabels(TaxonomyIndex taxonomyIndex) {
+        this(taxonomyIndex, FrameStorage.fromSystemProperty());
+    }
+
+    /**
+     * Computes the labels of every genre and property in the index
+     * @param taxonomyIndex the taxonomy to label
+     * @param storage the backend that holds the label columns
+     */
+    public DisplayLabels(TaxonomyIndex taxonomyIndex, FrameStorage storage) {
+        String[] genreLabels = new String[taxonomyIndex.size()];
+        for (int genreId = 0; genreId < genreLabels.length; genreId++) {
+            genreLabels[genreId] = formatName(taxonomyIndex.nameOf(genreId));
+        }
+
+        String[] propertyLabels = new String[taxonomyIndex.propertyCount()];
+        for (int propertyId = 0; propertyId < propertyLabels.length; propertyId++) {
+            propertyLabels[propertyId] = formatProperty(
+                taxonomyIndex.propertyNameOf(propertyId),
+                taxonomyIndex.propertyFunctorOf(propertyId),
+                taxonomyIndex.propertyValueOf(propertyId)
+            );
+        }
+        this.genreLabels = storage.stringColumn(genreLabels, false);
+        this.propertyLabels = storage.stringColumn(propertyLabels, false);
+    }
+
+    /**
+     * Gets the display name of a genre, for example "Musica Electronica"
+     * @param genreId the id of the genre
+     * @return the genre label
+     */
+    public String genreLabel(int genreId) {
+        return genreLabels.get(genreId);
+    }
+
+    /**
+     * Gets the display text of a property, for example "Usa instrumento: guitarra electrica"
+     * @param propertyId the id of the property
+     * @return the property label
+     */
+    public String propertyLabel(int propertyId) {
+        return propertyLabels.get(propertyId);
+    }
+
+    /**
+     * Formats a property term the way formatear_propiedad/2 does
+     * @param propertyName the Prolog text of the property
+     * @param functor the functor of the property
+     * @param value the argument text of the property
+     * @return the property label
+     */
+    public static String formatProperty(String propertyName, String functor, String value) {
+        if (propertyName.equals("es_arte(true)")) {
+            return "Es considerado arte";
+        }
+        if (value.isEmpty()) {
+            return "Propiedad: " + propertyName.replace('_', ' ');
+        }
+
+        String prefix = PROPERTY_PREFIXES.get(functor);
+        if (prefix == null) {
+            return "Caracteristica: " + propertyName.replace('_', ' ');
+        }
+        return prefix + value.replace('_', ' ');
+    }
+
+    /**
+     * Formats a name by replacing underscores and capitalizing each word
+     * @param name the raw name
+     * @return the formatted name
+     */
+    public static String formatName(String name) {
+        if (name == null) return "";
+
+        String[] words = name.replace('_', ' ').trim().split("\\s+");
+        StringBuilder result = new StringBuilder(name.length());
+
+        for (int i = 0; i < words.length; i++) {
+            if (i > 0) result.append(' ');
+
+            if (words[i].length() > 0) {
+                result.append(Character.toUpperCase(words[i].charAt(0)));
+                if (words[i].length() > 1) {
+                    result.append(words[i].substring(1).toLowerCase());
+                }
+            }
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,312 @@
+package zoologia;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage backend for the columns of a TaxonomyIndex, and of the
+ * AncestorTable and DisplayLabels built from it. The heap backend keeps
+ * plain Java arrays. The off-heap backend copies every column into direct
+ * byte buffers, so these structures add almost nothing to the
+ * garbage-collected heap once they have been built. Both backends behave
+ * the same: a null string is stored as "", and lookups work on any column
+ * created with lookups enabled, sorted or not.
+ *
+ * Only those columns leave the heap. The property postings are heap-only:
+ * they exist once, as the bitmaps of MusicGenreService, and have no copy
+ * in any column. The BM25 postings of DescriptionSearchIndex and the
+ * MinHash signatures of GenreSimilarityIndex stay on the heap too, and all
+ * of them still grow with the number of genres.
+ *
+ * The backend is chosen with -Dzoologia.storage=heap|offheap (default heap).
+ */
+public abstract class FrameStorage {
+
+    /** System property that selects the storage backend */
+    public static final String STORAGE_PROPERTY = "zoologia.storage";
+
+    /** Java arrays and hash lookups on the heap */
+    public static final FrameStorage HEAP = new HeapStorage();
+
+    /** Direct byte buffers outside the heap */
+    public static final FrameStorage OFF_HEAP = new OffHeapStorage();
+
+    /**
+     * Gets the backend selected by the zoologia.storage system property
+     * @return the configured storage backend
+     */
+    public static FrameStorage fromSystemProperty() {
+        String storage = System.getProperty(STORAGE_PROPERTY, "heap");
+        return storage.equalsIgnoreCase("offheap") ? OFF_HEAP : HEAP;
+    }
+
+    /**
+     * Gets the name of the backend, as written in the zoologia.storage system property
+     * @return "heap" or "offheap"
+     */
+    public abstract String getName();
+
+    /**
+     * Stores a column of integers
+     * @param values the values to store
+     * @return the stored column
+     */
+    public abstract IntColumn intColumn(int[] values);
+
+    /**
+     * Stores a column of strings
+     * @param values the values to store; null values are stored as ""
+     * @param lookupEnabled whether indexOf will be used on this column
+     * @return the stored column
+     */
+    public abstract StringColumn stringColumn(String[] values, boolean lookupEnabled);
+
+    /**
+     * Read-only column of integers
+     */
+    public interface IntColumn {
+
+        int get(int index);
+
+        int length();
+
+        /**
+         * Searches a sorted range of the column
+         * @param fromIndex the first index, inclusive
+         * @param toIndex the last index, exclusive
+         * @param key the value to look for
+         * @return the index of the key, or -1 if it is not in the range
+         */
+        default int binarySearch(int fromIndex, int toIndex, int key) {
+            int low = fromIndex;
+            int high = toIndex - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int value = get(middle);
+                if (value < key) {
+                    low = middle + 1;
+                } else if (value > key) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Read-only column of strings
+     */
+    public interface StringColumn {
+
+        String get(int index);
+
+        int length();
+
+        /**
+         * Finds a value in a column created with lookups enabled
+         * @param value the value to look for
+         * @return the index of the value, or -1 if it is not in the column
+         * @throws IllegalStateException if the column was created without lookups
+         */
+        int indexOf(String value);
+    }
+
+    /**
+     * Replaces null values by "", copying the array only if it has any
+     */
+    private static String[] withoutNulls(String[] values) {
+        String[] stored = values;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                if (stored == values) {
+                    stored = values.clone();
+                }
+                stored[i] = "";
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Heap backend: columns are the original arrays
+     */
+    private static final class HeapStorage extends FrameStorage {
+
+        @Override
+        public String getName() {
+            return "heap";
+        }
+
+        @Override
+        public IntColumn intColumn(int[] values) {
+            return new IntColumn() {
+                @Override
+                public int get(int index) {
+                    return values[index];
+                }
+
+                @Override
+                public int length() {
+                    return values.length;
+                }
+            };
+        }
+
+        @Override
+        public StringColumn stringColumn(String[] values, boolean lookupEnabled) {
+            String[] stored = withoutNulls(values);
+            Map<String, Integer> positions = lookupEnabled ? new HashMap<>(stored.length * 2) : null;
+            if (lookupEnabled) {
+                // The first position of a repeated value, as the off-heap lookup finds it
+                for (int i = stored.length - 1; i >= 0; i--) {
+                    positions.put(stored[i], i);
+                }
+            }
+            return new StringColumn() {
+                @Override
+                public String get(int index) {
+                    return stored[index];
+                }
+
+                @Override
+                public int length() {
+                    return stored.length;
+                }
+
+                @Override
+                public int indexOf(String value) {
+                    if (positions == null) {
+                        throw new IllegalStateException("Lookups need a column created with lookups enabled");
+                    }
+                    Integer position = positions.get(value);
+                    return position != null ? position : -1;
+                }
+            };
+        }
+    }
+
+    /**
+     * Off-heap backend: integers in a direct IntBuffer, strings as UTF-8
+     * bytes in a direct ByteBuffer with an offset column. Lookups use binary
+     * search instead of a heap hash map; unsorted columns keep their sorted
+     * order as an extra off-heap column of positions.
+     */
+    private static final class OffHeapStorage extends FrameStorage {
+
+        @Override
+        public String getName() {
+            return "offheap";
+        }
+
+        @Override
+        public IntColumn intColumn(int[] values) {
+            IntBuffer buffer = ByteBuffer.allocateDirect(Math.max(1, values.length) * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+            buffer.put(values);
+            int length = values.length;
+            return new IntColumn() {
+                @Override
+                public int get(int index) {
+                    if (index >= length) {
+                        throw new ArrayIndexOutOfBoundsException(index);
+                    }
+                    return buffer.get(index);
+                }
+
+                @Override
+                public int length() {
+                    return length;
+                }
+            };
+        }
+
+        @Override
+        public StringColumn stringColumn(String[] values, boolean lookupEnabled) {
+            String[] stored = withoutNulls(values);
+            byte[][] encoded = new byte[stored.length][];
+            int[] offsets = new int[stored.length + 1];
+            for (int i = 0; i < stored.length; i++) {
+                encoded[i] = stored[i].getBytes(StandardCharsets.UTF_8);
+                offsets[i + 1] = offsets[i] + encoded[i].length;
+            }
+
+            ByteBuffer data = ByteBuffer.allocateDirect(Math.max(1, offsets[stored.length]));
+            for (byte[] bytes : encoded) {
+                data.put(bytes);
+            }
+            IntColumn offsetColumn = intColumn(offsets);
+            IntColumn sortedPositions = lookupEnabled && !isSorted(stored) ? intColumn(sortedPositions(stored)) : null;
+
+            return new StringColumn() {
+                @Override
+                public String get(int index) {
+                    int start = offsetColumn.get(index);
+                    byte[] bytes = new byte[offsetColumn.get(index + 1) - start];
+                    data.duplicate().position(start).get(bytes);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+
+                @Override
+                public int length() {
+                    return offsetColumn.length() - 1;
+                }
+
+                @Override
+                public int indexOf(String value) {
+                    if (!lookupEnabled) {
+                        throw new IllegalStateException("Lookups need a column created with lookups enabled");
+                    }
+                    // Lower bound, so a repeated value is found at its first sorted position
+                    int low = 0;
+                    int high = length();
+                    while (low < high) {
+                        int middle = (low + high) >>> 1;
+                        if (get(positionAt(middle)).compareTo(value) < 0) {
+                            low = middle + 1;
+                        } else {
+                            high = middle;
+                        }
+                    }
+                    return low < length() && get(positionAt(low)).equals(value) ? positionAt(low) : -1;
+                }
+
+                private int positionAt(int sortedIndex) {
+                    return sortedPositions != null ? sortedPositions.get(sortedIndex) : sortedIndex;
+                }
+            };
+        }
+
+        /**
+         * Gets the positions of the values in sorted order, the first of equal values first
+         */
+        private static int[] sortedPositions(String[] values) {
+            Integer[] positions = new Integer[values.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            Arrays.sort(positions, (first, second) -> values[first].compareTo(values[second]));
+            int[] sorted = new int[positions.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = positions[i];
+            }
+            return sorted;
+        }
+
+        private static boolean isSorted(String[] values) {
+            for (int i = 1; i < values.length; i++) {
+                if (values[i - 1].compareTo(values[i]) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,670 @@
+package zoologia;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of genre ids, organised like a Roaring bitmap.
+ * Ids are split into a 16-bit key and a 16-bit low part, and the low parts
+ * of each key live in the smallest of three containers: a sorted array for
+ * sparse sets, a 65536-bit bitmap for dense sets, or a list of runs for
+ * sets made of consecutive ids. A property written by one frame costs a few
+ * bytes, and one inherited by almost every genre costs a few runs.
+ */
+public final class GenreBitmap {
+
+    /** Largest array container; beyond this a bitmap is never bigger */
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int BITMAP_BYTES = BITMAP_WORDS * Long.BYTES;
+
+    /** The set without any genre */
+    public static final GenreBitmap EMPTY = new GenreBitmap(new char[0], new Container[0]);
+
+    private final char[] keys;
+    private final Container[] containers;
+
+    private GenreBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    /**
+     * Creates a set from genre ids
+     * @param genreIds the ids, in any order and possibly repeated; none may be negative
+     * @return the compressed set
+     */
+    public static GenreBitmap of(int... genreIds) {
+        int[] sorted = genreIds.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && sorted[0] < 0) {
+            throw new IllegalArgumentException("Negative genre id: " + sorted[0]);
+        }
+
+        Builder builder = new Builder(sorted.length / ARRAY_LIMIT + 1);
+        char[] lows = new char[Math.min(sorted.length, 1 << 16)];
+        int i = 0;
+        while (i < sorted.length) {
+            int key = sorted[i] >>> 16;
+            int lowCount = 0;
+            for (; i < sorted.length && sorted[i] >>> 16 == key; i++) {
+                char low = (char) sorted[i];
+                if (lowCount == 0 || lows[lowCount - 1] != low) {
+                    lows[lowCount++] = low;
+                }
+            }
+            builder.add((char) key, fromSorted(lows, lowCount));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates the set of every id in a range, such as all genres of an index
+     * @param fromId the first id, inclusive
+     * @param toId the last id, exclusive
+     * @return the compressed set
+     */
+    public static GenreBitmap range(int fromId, int toId) {
+        if (fromId < 0 || toId <= fromId) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(((toId - 1) >>> 16) - (fromId >>> 16) + 1);
+        for (int key = fromId >>> 16; key <= (toId - 1) >>> 16; key++) {
+            int start = key == fromId >>> 16 ? fromId & 0xFFFF : 0;
+            int end = key == (toId - 1) >>> 16 ? (toId - 1) & 0xFFFF : 0xFFFF;
+            builder.add((char) key, new RunContainer(new char[]{(char) start, (char) (end - start)}));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Intersects this set with another
+     * @param other the other set
+     * @return the ids in both sets
+     */
+    public GenreBitmap and(GenreBitmap other) {
+        Builder builder = new Builder(Math.min(keys.length, other.keys.length));
+        int i = 0, j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] == other.keys[j]) {
+                builder.add(keys[i], and(containers[i], other.containers[j]));
+                i++;
+                j++;
+            } else if (keys[i] < other.keys[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Counts the ids in both sets without building the intersection
+     * @param other the other set
+     * @return the number of ids in both sets
+     */
+    public int andCardinality(GenreBitmap other) {
+        int cardinality = 0;
+        int i = 0, j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] == other.keys[j]) {
+                cardinality += andCardinality(containers[i], other.containers[j]);
+                i++;
+                j++;
+            } else if (keys[i] < other.keys[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Merges this set with another
+     * @param other the other set
+     * @return the ids in either set
+     */
+    public GenreBitmap or(GenreBitmap other) {
+        Builder builder = new Builder(keys.length + other.keys.length);
+        int i = 0, j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                builder.add(keys[i], containers[i]);
+                i++;
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                builder.add(other.keys[j], other.containers[j]);
+                j++;
+            } else {
+                builder.add(keys[i], or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Removes the ids of another set from this set
+     * @param other the ids to remove
+     * @return the ids in this set but not in the other
+     */
+    public GenreBitmap andNot(GenreBitmap other) {
+        Builder builder = new Builder(keys.length);
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.keys.length && other.keys[j] == keys[i]) {
+                builder.add(keys[i], andNot(containers[i], other.containers[j]));
+            } else {
+                builder.add(keys[i], containers[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Checks whether a genre is in the set
+     * @param genreId the id of the genre
+     * @return true if the set contains the id
+     */
+    public boolean contains(int genreId) {
+        if (genreId < 0) {
+            return false;
+        }
+        int position = Arrays.binarySearch(keys, (char) (genreId >>> 16));
+        return position >= 0 && containers[position].contains((char) genreId);
+    }
+
+    /**
+     * Counts the genres in the set
+     * @return the number of ids
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (Container container : containers) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Checks whether the set has no genres
+     * @return true if the set is empty
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Lists the ids of the set
+     * @return the ids in ascending order
+     */
+    public int[] toArray() {
+        int[] genreIds = new int[cardinality()];
+        int position = 0;
+        for (int i = 0; i < keys.length; i++) {
+            position = containers[i].copyTo(keys[i] << 16, genreIds, position);
+        }
+        return genreIds;
+    }
+
+    /**
+     * Estimates the memory taken by the container payloads
+     * @return the approximate size in bytes
+     */
+    public int sizeInBytes() {
+        int bytes = keys.length * Character.BYTES;
+        for (Container container : containers) {
+            bytes += container.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Intersects two containers with the same key
+     */
+    private static Container and(Container first, Container second) {
+        if (first instanceof ArrayContainer) {
+            return ((ArrayContainer) first).filter(second, true);
+        }
+        if (second instanceof ArrayContainer) {
+            return ((ArrayContainer) second).filter(first, true);
+        }
+        long[] words = first.toWords();
+        long[] otherWords = second.toWords();
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            words[i] &= otherWords[i];
+        }
+        return fromWords(words);
+    }
+
+    /**
+     * Counts the ids two containers with the same key have in common
+     */
+    private static int andCardinality(Container first, Container second) {
+        if (first instanceof ArrayContainer) {
+            return ((ArrayContainer) first).countContained(second);
+        }
+        if (second instanceof ArrayContainer) {
+            return ((ArrayContainer) second).countContained(first);
+        }
+        long[] words = first.toWords();
+        long[] otherWords = second.toWords();
+        int cardinality = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            cardinality += Long.bitCount(words[i] & otherWords[i]);
+        }
+        return cardinality;
+    }
+
+    /**
+     * Merges two containers with the same key
+     */
+    private static Container or(Container first, Container second) {
+        if (first instanceof ArrayContainer && second instanceof ArrayContainer
+                && first.cardinality() + second.cardinality() <= ARRAY_LIMIT) {
+            return ((ArrayContainer) first).merge((ArrayContainer) second);
+        }
+        long[] words = first.toWords();
+        second.orInto(words);
+        return fromWords(words);
+    }
+
+    /**
+     * Removes the ids of one container from another with the same key
+     */
+    private static Container andNot(Container first, Container second) {
+        if (first instanceof ArrayContainer) {
+            return ((ArrayContainer) first).filter(second, false);
+        }
+        long[] words = first.toWords();
+        long[] otherWords = second.toWords();
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            words[i] &= ~otherWords[i];
+        }
+        return fromWords(words);
+    }
+
+    /**
+     * Picks the smallest container for sorted, distinct low parts
+     */
+    private static Container fromSorted(char[] lows, int count) {
+        if (count == 0) {
+            return null;
+        }
+        int runCount = 1;
+        for (int i = 1; i < count; i++) {
+            if (lows[i] != lows[i - 1] + 1) {
+                runCount++;
+            }
+        }
+        if (RunContainer.bytesFor(runCount) < Math.min(count * Character.BYTES, BITMAP_BYTES)) {
+            char[] runs = new char[runCount * 2];
+            int run = 0;
+            runs[0] = lows[0];
+            for (int i = 1; i <= count; i++) {
+                if (i == count || lows[i] != lows[i - 1] + 1) {
+                    runs[run * 2 + 1] = (char) (lows[i - 1] - runs[run * 2]);
+                    if (i < count) {
+                        runs[++run * 2] = lows[i];
+                    }
+                }
+            }
+            return new RunContainer(runs);
+        }
+        if (count <= ARRAY_LIMIT) {
+            return new ArrayContainer(Arrays.copyOf(lows, count));
+        }
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+            words[lows[i] >>> 6] |= 1L << lows[i];
+        }
+        return new BitmapContainer(words, count);
+    }
+
+    /**
+     * Picks the smallest container for a bitmap of low parts
+     */
+    private static Container fromWords(long[] words) {
+        int cardinality = 0;
+        int runCount = 0;
+        long previousTopBit = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+            runCount += Long.bitCount(word & ~((word << 1) | previousTopBit));
+            previousTopBit = word >>> 63;
+        }
+        if (cardinality == 0) {
+            return null;
+        }
+
+        if (RunContainer.bytesFor(runCount) < Math.min(cardinality * Character.BYTES, BITMAP_BYTES)) {
+            char[] runs = new char[runCount * 2];
+            int run = 0;
+            int low = nextSetBit(words, 0);
+            while (low >= 0) {
+                int end = nextClearBit(words, low);
+                runs[run * 2] = (char) low;
+                runs[run * 2 + 1] = (char) (end - 1 - low);
+                run++;
+                low = end < 1 << 16 ? nextSetBit(words, end) : -1;
+            }
+            return new RunContainer(runs);
+        }
+        if (cardinality <= ARRAY_LIMIT) {
+            char[] values = new char[cardinality];
+            int position = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[position++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values);
+        }
+        return new BitmapContainer(words, cardinality);
+    }
+
+    /**
+     * Finds the first set bit at or after a position, or -1
+     */
+    private static int nextSetBit(long[] words, int from) {
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == BITMAP_WORDS) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Finds the first clear bit at or after a position, or 65536
+     */
+    private static int nextClearBit(long[] words, int from) {
+        int w = from >>> 6;
+        long word = ~words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == BITMAP_WORDS) {
+                return 1 << 16;
+            }
+            word = ~words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Collects non-empty containers in key order
+     */
+    private static final class Builder {
+
+        private char[] keys;
+        private Container[] containers;
+        private int size;
+
+        Builder(int capacity) {
+            this.keys = new char[Math.max(1, capacity)];
+            this.containers = new Container[keys.length];
+        }
+
+        void add(char key, Container container) {
+            if (container == null) {
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            keys[size] = key;
+            containers[size++] = container;
+        }
+
+        GenreBitmap build() {
+            return size == 0 ? EMPTY : new GenreBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+        }
+    }
+
+    /**
+     * Low parts of the ids that share one key
+     */
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        /** Sets the bits of this container in a 65536-bit bitmap */
+        abstract void orInto(long[] words);
+
+        /** Writes the full ids to an array and returns the next free position */
+        abstract int copyTo(int high, int[] genreIds, int position);
+
+        abstract int sizeInBytes();
+
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+            return words;
+        }
+    }
+
+    /**
+     * Sorted array of low parts, for sparse sets
+     */
+    private static final class ArrayContainer extends Container {
+
+        private final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (char low : values) {
+                words[low >>> 6] |= 1L << low;
+            }
+        }
+
+        @Override
+        int copyTo(int high, int[] genreIds, int position) {
+            for (char low : values) {
+                genreIds[position++] = high | low;
+            }
+            return position;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return values.length * Character.BYTES;
+        }
+
+        /** Keeps the values that are (or are not) in another container */
+        Container filter(Container other, boolean keepContained) {
+            char[] kept = new char[values.length];
+            int count = 0;
+            for (char low : values) {
+                if (other.contains(low) == keepContained) {
+                    kept[count++] = low;
+                }
+            }
+            return count == 0 ? null : new ArrayContainer(Arrays.copyOf(kept, count));
+        }
+
+        /** Counts the values that are in another container */
+        int countContained(Container other) {
+            int count = 0;
+            for (char low : values) {
+                if (other.contains(low)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /** Merges two small arrays without going through a bitmap */
+        Container merge(ArrayContainer other) {
+            char[] merged = new char[values.length + other.values.length];
+            int i = 0, j = 0, count = 0;
+            while (i < values.length || j < other.values.length) {
+                if (j == other.values.length || (i < values.length && values[i] < other.values[j])) {
+                    merged[count++] = values[i++];
+                } else if (i == values.length || other.values[j] < values[i]) {
+                    merged[count++] = other.values[j++];
+                } else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            return fromSorted(merged, count);
+        }
+    }
+
+    /**
+     * Plain 65536-bit bitmap, for dense sets
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        void orInto(long[] target) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                target[i] |= words[i];
+            }
+        }
+
+        @Override
+        int copyTo(int high, int[] genreIds, int position) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    genreIds[position++] = high | (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+            return position;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return BITMAP_BYTES;
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+    }
+
+    /**
+     * Runs of consecutive low parts stored as (start, length - 1) pairs, for
+     * sets such as whole subtrees or every genre
+     */
+    private static final class RunContainer extends Container {
+
+        private final char[] runs;
+        private final int cardinality;
+
+        RunContainer(char[] runs) {
+            this.runs = runs;
+            int total = 0;
+            for (int i = 1; i < runs.length; i += 2) {
+                total += runs[i] + 1;
+            }
+            this.cardinality = total;
+        }
+
+        static int bytesFor(int runCount) {
+            return runCount * 2 * Character.BYTES;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            int lowRun = 0;
+            int highRun = runs.length / 2 - 1;
+            while (lowRun <= highRun) {
+                int middle = (lowRun + highRun) >>> 1;
+                int start = runs[middle * 2];
+                if (low < start) {
+                    highRun = middle - 1;
+                } else if (low > start + runs[middle * 2 + 1]) {
+                    lowRun = middle + 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < runs.length; i += 2) {
+                int start = runs[i];
+                int end = start + runs[i + 1];
+                int firstWord = start >>> 6;
+                int lastWord = end >>> 6;
+                long firstMask = -1L << start;
+                long lastMask = -1L >>> (63 - (end & 63));
+                if (firstWord == lastWord) {
+                    words[firstWord] |= firstMask & lastMask;
+                } else {
+                    words[firstWord] |= firstMask;
+                    for (int w = firstWord + 1; w < lastWord; w++) {
+                        words[w] = -1L;
+                    }
+                    words[lastWord] |= lastMask;
+                }
+            }
+        }
+
+        @Override
+        int copyTo(int high, int[] genreIds, int position) {
+            for (int i = 0; i < runs.length; i += 2) {
+                int end = runs[i] + runs[i + 1];
+                for (int low = runs[i]; low <= end; low++) {
+                    genreIds[position++] = high | low;
+                }
+            }
+            return position;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return bytesFor(runs.length / 2);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package zoologia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Similarity search over the inherited property sets of every genre.
+ * Similarity is a weighted Jaccard coefficient where rare properties weigh
+ * more than properties almost every genre inherits, such as necesita(sonido).
+ * MinHash signatures grouped in LSH bands select the candidates, so a query
+ * only scores genres that share a band with the target. The signatures
+ * and buckets are heap arrays under either FrameStorage backend.
+ */
+public class GenreSimilarityIndex {
+
+    private static final int HASH_COUNT = 64;
+    private static final int ROWS_PER_BAND = 4;
+    private static final int BAND_COUNT = HASH_COUNT / ROWS_PER_BAND;
+    private static final long HASH_PRIME = 2147483647L;
+    private static final long HASH_SEED = 20240601L;
+
+    private final TaxonomyIndex taxonomyIndex;
+    private final int[] propertySetOffsets;
+    private final int[] propertySetIds;
+    private final double[] propertyWeights;
+    private final int[] signatures;
+    private final List<Map<Long, List<Integer>>> bandBuckets;
+
+    /**
+     * Computes property sets, weights, MinHash signatures and LSH buckets
+     * @param taxonomyIndex the taxonomy to index
+     * @param statistics the property frequencies of the same knowledge base
+     */
+    public GenreSimilarityIndex(TaxonomyIndex taxonomyIndex, KnowledgeBaseStatistics statistics) {
+        this.taxonomyIndex = taxonomyIndex;
+        int genreCount = taxonomyIndex.size();
+
+        // Inherited property sets, the same sets todas_las_propiedades/2 returns
+        this.propertySetOffsets = new int[genreCount + 1];
+        int[][] propertySets = new int[genreCount][];
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            propertySets[genreId] = taxonomyIndex.inheritedPropertyIds(genreId);
+            propertySetOffsets[genreId + 1] = propertySetOffsets[genreId] + propertySets[genreId].length;
+        }
+        this.propertySetIds = new int[propertySetOffsets[genreCount]];
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            System.arraycopy(propertySets[genreId], 0, propertySetIds, propertySetOffsets[genreId],
+                    propertySets[genreId].length);
+        }
+
+        // Inverse document frequency weights
+        this.propertyWeights = new double[taxonomyIndex.propertyCount()];
+        for (int propertyId = 0; propertyId < propertyWeights.length; propertyId++) {
+            int documentFrequency = statistics.inheritedFrequencyOf(propertyId);
+            propertyWeights[propertyId] = documentFrequency == 0 ? 0.0
+                    : Math.log(1.0 + (double) genreCount / documentFrequency);
+        }
+
+        // MinHash signatures with universal hashes (a * x + b) mod p
+        Random random = new Random(HASH_SEED);
+        long[] hashA = new long[HASH_COUNT];
+        long[] hashB = new long[HASH_COUNT];
+        for (int i = 0; i < HASH_COUNT; i++) {
+            hashA[i] = 1 + (random.nextLong() & Long.MAX_VALUE) % (HASH_PRIME - 1);
+            hashB[i] = (random.nextLong() & Long.MAX_VALUE) % HASH_PRIME;
+        }
+
+        this.signatures = new int[genreCount * HASH_COUNT];
+        Arrays.fill(signatures, Integer.MAX_VALUE);
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            int signatureStart = genreId * HASH_COUNT;
+            for (int p = propertySetOffsets[genreId]; p < propertySetOffsets[genreId + 1]; p++) {
+                long propertyId = propertySetIds[p];
+                for (int i = 0; i < HASH_COUNT; i++) {
+                    int hash = (int) ((hashA[i] * propertyId + hashB[i]) % HASH_PRIME);
+                    if (hash < signatures[signatureStart + i]) {
+                        signatures[signatureStart + i] = hash;
+                    }
+                }
+            }
+        }
+
+        this.bandBuckets = new ArrayList<>(BAND_COUNT);
+        for (int band = 0; band < BAND_COUNT; band++) {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            for (int genreId = 0; genreId < genreCount; genreId++) {
+                if (propertySetOffsets[genreId] != propertySetOffsets[genreId + 1]) {
+                    buckets.computeIfAbsent(bandKey(genreId, band), key -> new ArrayList<>()).add(genreId);
+                }
+            }
+            bandBuckets.add(buckets);
+        }
+    }
+
+    /**
+     * Finds the genres most similar to a given genre
+     * @param genreId the id of the target genre
+     * @param limit the maximum number of results
+     * @param exact true to score every genre, false to score only LSH candidates
+     * @return the ids of similar genres, most similar first
+     */
+    public int[] findSimilar(int genreId, int limit, boolean exact) {
+        int genreCount = taxonomyIndex.size();
+        int[] candidates;
+        int candidateCount = 0;
+
+        if (exact) {
+            candidates = new int[genreCount];
+            for (int candidateId = 0; candidateId < genreCount; candidateId++) {
+                if (candidateId != genreId) {
+                    candidates[candidateCount++] = candidateId;
+                }
+            }
+        } else {
+            boolean[] seen = new boolean[genreCount];
+            seen[genreId] = true;
+            List<Integer> collected = new ArrayList<>();
+            for (int band = 0; band < BAND_COUNT; band++) {
+                List<Integer> bucket = bandBuckets.get(band).get(bandKey(genreId, band));
+                if (bucket == null) continue;
+                for (int candidateId : bucket) {
+                    if (!seen[candidateId]) {
+                        seen[candidateId] = true;
+                        collected.add(candidateId);
+                    }
+                }
+            }
+
+            // Genres with very unusual property sets may share no band with anything
+            if (collected.size() < limit) {
+                return findSimilar(genreId, limit, true);
+            }
+            candidates = new int[collected.size()];
+            for (int candidateId : collected) {
+                candidates[candidateCount++] = candidateId;
+            }
+        }
+
+        double[] scores = new double[genreCount];
+        Integer[] ranked = new Integer[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            scores[candidates[i]] = similarity(genreId, candidates[i]);
+            ranked[i] = candidates[i];
+        }
+        Arrays.sort(ranked, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        int resultCount = Math.min(limit, candidateCount);
+        int[] results = new int[resultCount];
+        for (int i = 0; i < resultCount; i++) {
+            results[i] = ranked[i];
+        }
+        return results;
+    }
+
+    /**
+     * Computes the exact weighted Jaccard similarity of two genres
+     * @param firstGenreId the id of the first genre
+     * @param secondGenreId the id of the second genre
+     * @return the weight of the shared properties divided by the weight of all their properties
+     */
+    public double similarity(int firstGenreId, int secondGenreId) {
+        int first = propertySetOffsets[firstGenreId];
+        int firstEnd = propertySetOffsets[firstGenreId + 1];
+        int second = propertySetOffsets[secondGenreId];
+        int secondEnd = propertySetOffsets[secondGenreId + 1];
+        double sharedWeight = 0.0;
+        double totalWeight = 0.0;
+
+        // Both sets are sorted, so a merge walk visits each property once
+        while (first < firstEnd || second < secondEnd) {
+            int firstProperty = first < firstEnd ? propertySetIds[first] : Integer.MAX_VALUE;
+            int secondProperty = second < secondEnd ? propertySetIds[second] : Integer.MAX_VALUE;
+            if (firstProperty == secondProperty) {
+                sharedWeight += propertyWeights[firstProperty];
+                totalWeight += propertyWeights[firstProperty];
+                first++;
+                second++;
+            } else if (firstProperty < secondProperty) {
+                totalWeight += propertyWeights[firstProperty];
+                first++;
+            } else {
+                totalWeight += propertyWeights[secondProperty];
+                second++;
+            }
+        }
+        return totalWeight == 0.0 ? 0.0 : sharedWeight / totalWeight;
+    }
+
+    /**
+     * Combines the signature rows of one band into a bucket key
+     */
+    private long bandKey(int genreId, int band) {
+        long key = band;
+        int rowStart = genreId * HASH_COUNT + band * ROWS_PER_BAND;
+        for (int row = 0; row < ROWS_PER_BAND; row++) {
+            key = key * 31 + signatures[rowStart + row];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,106 @@
+package zoologia;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Named knowledge bases hosted side by side in one Prolog engine. The rules
+ * in inference_engine.pl and queries.pl are consulted once into user and
+ * are module_transparent, and each knowledge base keeps its frames in its
+ * own module. Every handle is a MusicGenreService with its own indexes and
+ * caches, so a search in one catalogue never sees another catalogue.
+ */
+public class KnowledgeBaseRegistry {
+
+    /** Module of the default knowledge base, where the shared rules live */
+    public static final String DEFAULT_MODULE = "user";
+
+    /** Prefix of the modules of named knowledge bases, to keep them apart from library modules */
+    public static final String MODULE_PREFIX = "kb_";
+
+    private static final String[] SHARED_RULE_FILES = {"inference_engine.pl", "queries.pl"};
+
+    private final MusicGenreService defaultKnowledgeBase = new MusicGenreService();
+    private final Map<String, MusicGenreService> knowledgeBases = new LinkedHashMap<>();
+    private boolean sharedRulesLoaded;
+
+    /**
+     * Consults the shared rule files into user, once
+     * @return true if the rules are loaded
+     */
+    public synchronized boolean loadSharedRules() {
+        if (!sharedRulesLoaded) {
+            boolean success = true;
+            for (String ruleFile : SHARED_RULE_FILES) {
+                success &= defaultKnowledgeBase.loadKnowledgeBase(ruleFile);
+            }
+            sharedRulesLoaded = success;
+        }
+        return sharedRulesLoaded;
+    }
+
+    /**
+     * Opens a named knowledge base, or reloads it if it is already open
+     * @param name the handle name, such as "europa"; lowercase letters, digits and underscores
+     * @param filePath the Prolog file with the frames of the knowledge base
+     * @return the service for the knowledge base, or null if it could not be loaded
+     * @throws IllegalArgumentException if the name is not valid
+     */
+    public synchronized MusicGenreService open(String name, String filePath) {
+        if (!name.matches("[a-z][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid knowledge base name: " + name);
+        }
+        if (!loadSharedRules()) {
+            System.err.println("Shared rules could not be loaded; cannot open knowledge base " + name);
+            return null;
+        }
+
+        MusicGenreService knowledgeBase = knowledgeBases.get(name);
+        if (knowledgeBase == null) {
+            knowledgeBase = new MusicGenreService(MODULE_PREFIX + name);
+        }
+        if (!knowledgeBase.loadKnowledgeBaseFile(filePath)) {
+            return null;
+        }
+        knowledgeBases.put(name, knowledgeBase);
+        System.out.println("Knowledge base '" + name + "' opened from " + filePath);
+        return knowledgeBase;
+    }
+
+    /**
+     * Gets an open knowledge base
+     * @param name the handle name
+     * @return the service for the knowledge base, or null if it is not open
+     */
+    public synchronized MusicGenreService get(String name) {
+        return knowledgeBases.get(name);
+    }
+
+    /**
+     * Gets the service over the default knowledge base in user
+     * @return the default service
+     */
+    public MusicGenreService getDefault() {
+        return defaultKnowledgeBase;
+    }
+
+    /**
+     * Lists the open knowledge bases
+     * @return the handle names, in opening order
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(knowledgeBases.keySet());
+    }
+
+    /**
+     * Closes a knowledge base and drops its facts from the Prolog database
+     * @param name the handle name
+     * @return true if the knowledge base was open and has been closed
+     */
+    public synchronized boolean close(String name) {
+        MusicGenreService knowledgeBase = knowledgeBases.remove(name);
+        return knowledgeBase != null && knowledgeBase.unloadKnowledgeBase();
+    }
+}
@@ -0,0 +1,182 @@
+package zoologia;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of knowledge base statistics, computed once per load from the
+ * taxonomy index. It is tagged with the knowledge base version it was
+ * computed from, so callers can tell when it is stale. Depths are the ones
+ * of the AncestorTable, so the statistics agree with every other depth shown.
+ */
+public class KnowledgeBaseStatistics {
+
+    private final long knowledgeBaseVersion;
+    private final int genreCount;
+    private final int propertyCount;
+    private final AncestorTable ancestorTable;
+    private final int[] depthHistogram;
+    private final int[] fanOutHistogram;
+    private final int leafCount;
+    private final int[] directFrequency;
+    private final int[] inheritedFrequency;
+
+    /**
+     * Computes the statistics of a taxonomy
+     * @param taxonomyIndex the indexed knowledge base
+     * @param ancestorTable the depths of the genres in the index
+     * @param knowledgeBaseVersion the version of the knowledge base the index was built from
+     */
+    public KnowledgeBaseStatistics(TaxonomyIndex taxonomyIndex, AncestorTable ancestorTable, long knowledgeBaseVersion) {
+        this.knowledgeBaseVersion = knowledgeBaseVersion;
+        this.ancestorTable = ancestorTable;
+        this.genreCount = taxonomyIndex.size();
+        this.propertyCount = taxonomyIndex.propertyCount();
+
+        int maxDepth = 0;
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            maxDepth = Math.max(maxDepth, ancestorTable.depthOf(genreId));
+        }
+
+        this.depthHistogram = new int[maxDepth + 1];
+        int maxFanOut = 0;
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            depthHistogram[ancestorTable.depthOf(genreId)]++;
+            maxFanOut = Math.max(maxFanOut, taxonomyIndex.childCount(genreId));
+        }
+
+        this.fanOutHistogram = new int[maxFanOut + 1];
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            fanOutHistogram[taxonomyIndex.childCount(genreId)]++;
+        }
+        this.leafCount = fanOutHistogram.length > 0 ? fanOutHistogram[0] : 0;
+
+        this.directFrequency = new int[propertyCount];
+        this.inheritedFrequency = new int[propertyCount];
+        for (int genreId = 0; genreId < genreCount; genreId++) {
+            for (int i = 0; i < taxonomyIndex.directPropertyCount(genreId); i++) {
+                directFrequency[taxonomyIndex.directPropertyAt(genreId, i)]++;
+            }
+            for (int propertyId : taxonomyIndex.inheritedPropertyIds(genreId)) {
+                inheritedFrequency[propertyId]++;
+            }
+        }
+    }
+
+    /**
+     * Gets the knowledge base version these statistics describe
+     * @return the knowledge base version
+     */
+    public long getKnowledgeBaseVersion() {
+        return knowledgeBaseVersion;
+    }
+
+    /**
+     * Gets the number of genres
+     * @return the genre count
+     */
+    public int getGenreCount() {
+        return genreCount;
+    }
+
+    /**
+     * Gets the number of distinct properties written in frames
+     * @return the property count
+     */
+    public int getPropertyCount() {
+        return propertyCount;
+    }
+
+    /**
+     * Gets the depth of a genre, where top-level frames have depth 1
+     * @param genreId the id of the genre
+     * @return the length of the genre's hierarchy chain
+     */
+    public int depthOf(int genreId) {
+        return ancestorTable.depthOf(genreId);
+    }
+
+    /**
+     * Gets the deepest level in the taxonomy
+     * @return the maximum depth
+     */
+    public int getMaxDepth() {
+        return depthHistogram.length - 1;
+    }
+
+    /**
+     * Gets how many genres sit at each depth
+     * @return counts indexed by depth
+     */
+    public int[] getDepthHistogram() {
+        return depthHistogram.clone();
+    }
+
+    /**
+     * Gets how many genres have each number of direct children
+     * @return counts indexed by child count
+     */
+    public int[] getFanOutHistogram() {
+        return fanOutHistogram.clone();
+    }
+
+    /**
+     * Gets the largest number of direct children of any genre
+     * @return the maximum fan-out
+     */
+    public int getMaxFanOut() {
+        return fanOutHistogram.length - 1;
+    }
+
+    /**
+     * Gets the average number of children of genres that have children
+     * @return the average fan-out of inner nodes
+     */
+    public double getAverageFanOut() {
+        int innerCount = genreCount - leafCount;
+        int childTotal = 0;
+        for (int children = 1; children < fanOutHistogram.length; children++) {
+            childTotal += children * fanOutHistogram[children];
+        }
+        return innerCount == 0 ? 0.0 : (double) childTotal / innerCount;
+    }
+
+    /**
+     * Gets the number of genres without subgenres
+     * @return the leaf count
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * Gets how many frames write a property directly
+     * @param propertyId the id of the property
+     * @return the direct document frequency
+     */
+    public int directFrequencyOf(int propertyId) {
+        return directFrequency[propertyId];
+    }
+
+    /**
+     * Gets how many genres have a property, directly or by inheritance
+     * @param propertyId the id of the property
+     * @return the inherited document frequency
+     */
+    public int inheritedFrequencyOf(int propertyId) {
+        return inheritedFrequency[propertyId];
+    }
+
+    /**
+     * Formats a short summary for display
+     * @return the summary text
+     */
+    public String formatSummary() {
+        return "Géneros: " + genreCount + "\n"
+             + "Propiedades distintas: " + propertyCount + "\n"
+             + "Profundidad máxima: " + getMaxDepth() + "\n"
+             + "Géneros por nivel: " + Arrays.toString(Arrays.copyOfRange(depthHistogram, 1, depthHistogram.length)) + "\n"
+             + "Subgéneros por género (máx / promedio): " + getMaxFanOut()
+             + String.format(" / %.1f", getAverageFanOut()) + "\n"
+             + "Géneros sin subgéneros: " + leafCount;
+    }
+}
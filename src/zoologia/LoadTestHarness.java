@@ -0,0 +1,436 @@
+package zoologia;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Standalone load generator for the music genre service. Requests arrive at
+ * a fixed rate whether or not earlier requests have finished (open loop),
+ * and latency is measured from the time each request was scheduled, so
+ * queueing delay is included once the target saturates. Requests still
+ * queued or running when a run is cut off are reported as timeouts at the
+ * cutoff latency, so past saturation the slowest requests are not lost.
+ * Before each rate the service is warmed up untimed and its search cache
+ * is cleared, and each rate uses its own seed, so every rate starts from the
+ * same state and no rate replays the cached answers of the previous one.
+ *
+ * Only in-process load is supported: the application has no server mode, so
+ * the only Target is InProcessTarget, which calls a MusicGenreService in the
+ * same JVM. Load against a remote deployment would need a client that
+ * implements Target.
+ *
+ * Usage: LoadTestHarness [--genres=N] [--properties=K] [--fanout=F]
+ *        [--rates=10,50,100] [--duration=30] [--threads=8] [--mix=60,25,15] [--seed=1]
+ *        [--warmup=5]
+ * With --genres=0 the real knowledge base in prolog/ is used.
+ */
+public class LoadTestHarness {
+
+    /**
+     * Kinds of requests in the workload mix
+     */
+    public enum Operation {
+        /** Properties, hierarchy and description of one genre, as the explorer tab does */
+        DETAIL,
+        /** findGenresWithProperty for one property */
+        SINGLE_PROPERTY,
+        /** findGenresWithMultipleProperties with "todas" or "alguna" */
+        MULTI_PROPERTY
+    }
+
+    /**
+     * System under test. InProcessTarget is the only implementation, as
+     * there is no server mode to send requests to; a client for one would
+     * implement these three calls.
+     */
+    public interface Target {
+        void genreDetail(String genreName);
+        void singlePropertySearch(String propertyName);
+        void multiPropertySearch(String[] propertyNames, String searchCriteria);
+    }
+
+    /**
+     * Target that calls a MusicGenreService in the same JVM
+     */
+    public static class InProcessTarget implements Target {
+
+        private final MusicGenreService musicGenreService;
+
+        public InProcessTarget(MusicGenreService musicGenreService) {
+            this.musicGenreService = musicGenreService;
+        }
+
+        @Override
+        public void genreDetail(String genreName) {
+            musicGenreService.getGenreHierarchy(genreName);
+            musicGenreService.getGenreProperties(genreName);
+            musicGenreService.getGenreDescription(genreName);
+        }
+
+        @Override
+        public void singlePropertySearch(String propertyName) {
+            musicGenreService.findGenresWithProperty(propertyName);
+        }
+
+        @Override
+        public void multiPropertySearch(String[] propertyNames, String searchCriteria) {
+            musicGenreService.findGenresWithMultipleProperties(propertyNames, searchCriteria);
+        }
+    }
+
+    private final Target target;
+    private final String[] genreNames;
+    private final String[] propertyNames;
+    private final int[] operationMix;
+    private final int workerThreads;
+    private final long seed;
+
+    /**
+     * Creates a load generator
+     * @param target the system under test
+     * @param genreNames genres used for detail lookups
+     * @param propertyNames properties used for searches
+     * @param operationMix relative weights of DETAIL, SINGLE_PROPERTY and MULTI_PROPERTY
+     * @param workerThreads the number of concurrent callers
+     * @param seed the random seed for the request sequence
+     */
+    public LoadTestHarness(Target target, String[] genreNames, String[] propertyNames,
+                           int[] operationMix, int workerThreads, long seed) {
+        this.target = target;
+        this.genreNames = genreNames;
+        this.propertyNames = propertyNames;
+        this.operationMix = operationMix;
+        this.workerThreads = workerThreads;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the workload at a fixed arrival rate with the harness seed
+     * @param requestsPerSecond the offered load
+     * @param durationSeconds how long to keep sending requests
+     * @return the latency and throughput report
+     * @throws InterruptedException if the run is interrupted
+     */
+    public RunReport run(double requestsPerSecond, int durationSeconds) throws InterruptedException {
+        return run(requestsPerSecond, durationSeconds, seed);
+    }
+
+    /**
+     * Runs the workload at a fixed arrival rate. Requests that have not
+     * finished when the run is cut off are recorded as timeouts, and the
+     * method returns only once every running request has ended.
+     * @param requestsPerSecond the offered load
+     * @param durationSeconds how long to keep sending requests
+     * @param runSeed the random seed for this run's request sequence
+     * @return the latency and throughput report
+     * @throws InterruptedException if the run is interrupted
+     */
+    public RunReport run(double requestsPerSecond, int durationSeconds, long runSeed) throws InterruptedException {
+        Random random = new Random(runSeed);
+        int totalRequests = (int) (requestsPerSecond * durationSeconds);
+        long intervalNanos = (long) (1_000_000_000L / requestsPerSecond);
+        Map<Operation, LatencyRecorder> recorders = new HashMap<>();
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder(totalRequests));
+        }
+        AtomicLong lastCompletion = new AtomicLong();
+        // Per request: 0 while pending, 1 once recorded by its worker, 2 once recorded as a timeout
+        AtomicIntegerArray requestStates = new AtomicIntegerArray(totalRequests);
+        long[] intendedStarts = new long[totalRequests];
+        Operation[] requestOperations = new Operation[totalRequests];
+
+        ExecutorService workers = Executors.newFixedThreadPool(workerThreads);
+        long startTime = System.nanoTime();
+
+        for (int i = 0; i < totalRequests; i++) {
+            long intendedStart = startTime + i * intervalNanos;
+            long waitNanos = intendedStart - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+
+            Operation operation = pickOperation(random);
+            Runnable request = createRequest(operation, random);
+            LatencyRecorder recorder = recorders.get(operation);
+            int requestIndex = i;
+            intendedStarts[i] = intendedStart;
+            requestOperations[i] = operation;
+            workers.execute(() -> {
+                boolean failed = false;
+                try {
+                    request.run();
+                } catch (Exception e) {
+                    failed = true;
+                }
+                long endTime = System.nanoTime();
+                if (requestStates.compareAndSet(requestIndex, 0, 1)) {
+                    recorder.record(endTime - intendedStart, failed);
+                    lastCompletion.accumulateAndGet(endTime, Math::max);
+                }
+            });
+        }
+
+        workers.shutdown();
+        boolean finished = workers.awaitTermination(Math.max(60, durationSeconds * 10L), TimeUnit.SECONDS);
+        long endTime = lastCompletion.get();
+        if (!finished) {
+            // Drop the queued requests, then count every unfinished request as a timeout at the cutoff
+            workers.shutdownNow();
+            long cutoffTime = System.nanoTime();
+            for (int i = 0; i < totalRequests; i++) {
+                if (requestStates.compareAndSet(i, 0, 2)) {
+                    recorders.get(requestOperations[i]).recordTimeout(cutoffTime - intendedStarts[i]);
+                }
+            }
+            endTime = cutoffTime;
+            // Requests already running cannot be interrupted; let them end before the next rate starts
+            while (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("Waiting for running requests to end before the next rate");
+            }
+        }
+
+        double elapsedSeconds = Math.max(1, endTime - startTime) / 1e9;
+        return new RunReport(requestsPerSecond, elapsedSeconds, totalRequests, recorders);
+    }
+
+    /**
+     * Picks the next operation according to the mix weights
+     */
+    private Operation pickOperation(Random random) {
+        int totalWeight = 0;
+        for (int weight : operationMix) {
+            totalWeight += weight;
+        }
+        int choice = random.nextInt(Math.max(1, totalWeight));
+        for (int i = 0; i < operationMix.length; i++) {
+            choice -= operationMix[i];
+            if (choice < 0) {
+                return Operation.values()[i];
+            }
+        }
+        return Operation.DETAIL;
+    }
+
+    /**
+     * Chooses the arguments of a request up front so the sequence is reproducible
+     */
+    private Runnable createRequest(Operation operation, Random random) {
+        switch (operation) {
+            case SINGLE_PROPERTY: {
+                String propertyName = propertyNames[random.nextInt(propertyNames.length)];
+                return () -> target.singlePropertySearch(propertyName);
+            }
+            case MULTI_PROPERTY: {
+                String[] selected = new String[2 + random.nextInt(2)];
+                for (int i = 0; i < selected.length; i++) {
+                    selected[i] = propertyNames[random.nextInt(propertyNames.length)];
+                }
+                String searchCriteria = random.nextBoolean() ? "todas" : "alguna";
+                return () -> target.multiPropertySearch(selected, searchCriteria);
+            }
+            default: {
+                String genreName = genreNames[random.nextInt(genreNames.length)];
+                return () -> target.genreDetail(genreName);
+            }
+        }
+    }
+
+    /**
+     * Collects latencies for one operation type
+     */
+    private static final class LatencyRecorder {
+
+        private long[] latencies;
+        private int count;
+        private int errors;
+        private int timeouts;
+
+        LatencyRecorder(int expectedCount) {
+            this.latencies = new long[Math.max(16, expectedCount)];
+        }
+
+        synchronized void record(long latencyNanos, boolean failed) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (failed) errors++;
+        }
+
+        /**
+         * Records a request that had not finished at the cutoff, with its latency up to the cutoff
+         */
+        synchronized void recordTimeout(long latencyNanos) {
+            record(latencyNanos, false);
+            timeouts++;
+        }
+
+        synchronized long[] sorted() {
+            long[] sortedLatencies = Arrays.copyOf(latencies, count);
+            Arrays.sort(sortedLatencies);
+            return sortedLatencies;
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+
+        synchronized int timeouts() {
+            return timeouts;
+        }
+    }
+
+    /**
+     * Results of one run at a fixed arrival rate
+     */
+    public static final class RunReport {
+
+        private final double offeredRate;
+        private final double elapsedSeconds;
+        private final int submittedCount;
+        private final Map<Operation, LatencyRecorder> recorders;
+
+        private RunReport(double offeredRate, double elapsedSeconds, int submittedCount,
+                          Map<Operation, LatencyRecorder> recorders) {
+            this.offeredRate = offeredRate;
+            this.elapsedSeconds = elapsedSeconds;
+            this.submittedCount = submittedCount;
+            this.recorders = recorders;
+        }
+
+        /**
+         * Gets the number of requests that had not finished when the run was cut off
+         * @return the timeout count
+         */
+        public int timeoutCount() {
+            int timeouts = 0;
+            for (LatencyRecorder recorder : recorders.values()) {
+                timeouts += recorder.timeouts();
+            }
+            return timeouts;
+        }
+
+        /**
+         * Gets the number of requests that finished, successfully or not
+         * @return the completed count
+         */
+        public int completedCount() {
+            int recorded = 0;
+            for (LatencyRecorder recorder : recorders.values()) {
+                recorded += recorder.sorted().length;
+            }
+            return recorded - timeoutCount();
+        }
+
+        /**
+         * Gets the number of completed requests per second; timeouts do not count
+         * @return the achieved throughput
+         */
+        public double throughput() {
+            return completedCount() / elapsedSeconds;
+        }
+
+        /**
+         * Formats the report as a table with one row per operation
+         * @return the report text
+         */
+        public String format() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("=== OFFERED %.1f req/s | ACHIEVED %.1f req/s | %.1f s ===%n",
+                    offeredRate, throughput(), elapsedSeconds));
+            report.append(String.format("Submitted %d, completed %d, timed out %d%n",
+                    submittedCount, completedCount(), timeoutCount()));
+            report.append(String.format("%-16s %8s %7s %8s %9s %9s %9s %9s %9s%n", "operation", "count",
+                    "errors", "timeouts", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+            for (Operation operation : Operation.values()) {
+                LatencyRecorder recorder = recorders.get(operation);
+                long[] latencies = recorder.sorted();
+                if (latencies.length == 0) continue;
+                report.append(String.format("%-16s %8d %7d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                        operation, latencies.length, recorder.errors(), recorder.timeouts(),
+                        percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                        percentile(latencies, 99.9), latencies[latencies.length - 1] / 1e6));
+            }
+            return report.toString();
+        }
+
+        private static double percentile(long[] sortedLatencies, double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int genreCount = Integer.parseInt(options.getOrDefault("genres", "1000"));
+        int propertiesPerGenre = Integer.parseInt(options.getOrDefault("properties", "6"));
+        int fanout = Integer.parseInt(options.getOrDefault("fanout", "8"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int workerThreads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        int warmupRounds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        String[] rates = options.getOrDefault("rates", "10,50,100").split(",");
+        String[] mixWeights = options.getOrDefault("mix", "60,25,15").split(",");
+        int[] operationMix = new int[Operation.values().length];
+        for (int i = 0; i < operationMix.length && i < mixWeights.length; i++) {
+            operationMix[i] = Integer.parseInt(mixWeights[i].trim());
+        }
+
+        // The service logs every query; keep the report readable
+        PrintStream reportOutput = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        MusicGenreService musicGenreService = new MusicGenreService();
+        musicGenreService.loadKnowledgeBase("inference_engine.pl");
+        if (genreCount > 0) {
+            Path syntheticFile = Files.createTempFile("synthetic_kb_", ".pl");
+            new SyntheticKnowledgeBase(genreCount, propertiesPerGenre, fanout, seed).write(syntheticFile);
+            musicGenreService.loadKnowledgeBaseFile(syntheticFile.toString());
+            syntheticFile.toFile().deleteOnExit();
+        } else {
+            musicGenreService.loadKnowledgeBase("knowledge_base.pl");
+        }
+        musicGenreService.loadKnowledgeBase("queries.pl");
+
+        TaxonomyIndex taxonomyIndex = musicGenreService.getTaxonomyIndex();
+        String[] genreNames = new String[taxonomyIndex.size()];
+        for (int genreId = 0; genreId < genreNames.length; genreId++) {
+            genreNames[genreId] = taxonomyIndex.nameOf(genreId);
+        }
+        String[] propertyNames = new String[taxonomyIndex.propertyCount()];
+        for (int propertyId = 0; propertyId < propertyNames.length; propertyId++) {
+            propertyNames[propertyId] = taxonomyIndex.propertyNameOf(propertyId);
+        }
+        reportOutput.println("Loaded " + genreNames.length + " genres and " + propertyNames.length + " properties");
+
+        LoadTestHarness harness = new LoadTestHarness(new InProcessTarget(musicGenreService),
+                genreNames, propertyNames, operationMix, workerThreads, seed);
+        for (int rateIndex = 0; rateIndex < rates.length; rateIndex++) {
+            // Same starting state for every rate: indexes built and code warm, search cache empty
+            new ServiceWarmup(musicGenreService).run(warmupRounds);
+            musicGenreService.clearSearchResultCache();
+            RunReport report = harness.run(Double.parseDouble(rates[rateIndex].trim()), durationSeconds, seed + rateIndex);
+            reportOutput.println(report.format());
+            reportOutput.println("Query budget (cumulative): " + musicGenreService.getQueryBudget().formatMetrics());
+            reportOutput.println(musicGenreService.getRequestCoalescer().formatMetrics() + " (cumulative)");
+        }
+        System.exit(0);
+    }
+}
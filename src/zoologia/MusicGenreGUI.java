@@ -1,11 +1,26 @@
 package zoologia;
 
 import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.ListSelectionEvent;
+import javax.swing.table.TableColumn;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
 
 /**
  * Main GUI class for the Music Genre Explorer application.
@@ -13,11 +28,17 @@ import javax.swing.event.ListSelectionEvent;
  */
 public class MusicGenreGUI extends JFrame {
     
+    private JTabbedPane mainTabbedPane;
+    
     // Service layer
     private final MusicGenreService musicGenreService;
+    private final StartupProfiler startupProfiler;
+    private final Map<String, ImageIcon> preloadedImages = new ConcurrentHashMap<>();
     
     // Data arrays
     private String[] allGenres;
+    // Set on the event thread once the label table is built; until then names are formatted directly
+    private boolean displayLabelsReady;
     private String[] allProperties;
     
     // GUI Components - Genre Explorer Tab
@@ -37,6 +58,29 @@ public class MusicGenreGUI extends JFrame {
     private JButton clearAllPropertiesButton;
     private JComboBox<String> searchCriteriaComboBox;
     private final JTextArea searchResultsDisplay = new JTextArea();
+    private final JTable searchResultsTable = new JTable(SearchResultsTableModel.empty());
+    private final JTextField expressionField = new JTextField();
+    private final DefaultComboBoxModel<String> expressionScopeModel = new DefaultComboBoxModel<>();
+    private Map<String, Integer> propertyFacetCounts = Map.of();
+    
+    // GUI Components - Taxonomy Tree Tab
+    private final JTree taxonomyTree = new JTree(new DefaultTreeModel(null));
+    private final JTextField taxonomySearchField = new JTextField();
+    private final JLabel taxonomyStatusLabel = new JLabel();
+    private TaxonomyTreeModel taxonomyTreeModel;
+    private String lastTaxonomySearch = "";
+    private int[] taxonomySearchMatches = new int[0];
+    private int taxonomySearchPosition = -1;
+    
+    // GUI Components - Description Search Tab
+    private final JTextField descriptionSearchField = new JTextField();
+    private final JTextArea descriptionResultsDisplay = new JTextArea();
+    
+    // GUI Components - Statistics Tab
+    private final DefaultComboBoxModel<String> statisticsFunctorModel = new DefaultComboBoxModel<>();
+    private final DefaultComboBoxModel<String> statisticsSubtreeModel = new DefaultComboBoxModel<>();
+    private final JCheckBox includeInheritedCheckBox = new JCheckBox("Incluir propiedades heredadas");
+    private final JTextArea statisticsDisplay = new JTextArea();
     
     // UI Color Scheme
     private final Color BACKGROUND_COLOR = new Color(250, 250, 250);
@@ -46,12 +90,36 @@ public class MusicGenreGUI extends JFrame {
     private final Color SECONDARY_TEXT_COLOR = new Color(107, 114, 128);
     private final Color BORDER_COLOR = new Color(229, 231, 235);
     
+    private static final String RESULTS_TABLE_HINT =
+        "\n\n📑 Los géneros se listan en la tabla inferior; haga doble clic en uno para verlo en el explorador.";
+    
     public MusicGenreGUI() {
+        this(new StartupProfiler());
+    }
+    
+    /**
+     * Builds the window with placeholders and starts loading data in the background
+     * @param startupProfiler records the duration of each startup phase
+     */
+    public MusicGenreGUI(StartupProfiler startupProfiler) {
         super("Sistema de Géneros Musicales");
         this.musicGenreService = new MusicGenreService();
+        this.startupProfiler = startupProfiler;
         
-        setupWindow();
-        initializeComponents();
+        startupProfiler.run("Build window and tabs", () -> {
+            setupWindow();
+            initializeComponents();
+        });
+        startBackgroundInitialization();
+    }
+    
+    /**
+     * Paints the window and records the first paint for the startup report
+     */
+    @Override
+    public void paint(Graphics graphics) {
+        super.paint(graphics);
+        startupProfiler.markFirstPaint();
     }
     
     /**
@@ -85,14 +153,15 @@ public class MusicGenreGUI extends JFrame {
     private void initializeComponents() {
         this.setBackground(BACKGROUND_COLOR);
         
-        JTabbedPane mainTabbedPane = createMainTabbedPane();
+        mainTabbedPane = createMainTabbedPane();
         this.add(mainTabbedPane);
         
-        // Load knowledge base
-        loadKnowledgeBase();
         setupGenreExplorerTab(mainTabbedPane);
         setupPropertySearchTab(mainTabbedPane);
         setupTaxonomyTreeTab(mainTabbedPane);
+        setupDescriptionSearchTab(mainTabbedPane);
+        setupStatisticsTab(mainTabbedPane);
+        showLoadingPlaceholders();
         
         // Handle window closing
         addWindowListener(new WindowAdapter() {
@@ -114,6 +183,115 @@ public class MusicGenreGUI extends JFrame {
         return tabbedPane;
     }
     
+    /**
+     * Shows loading messages until the background startup fills each component
+     */
+    private void showLoadingPlaceholders() {
+        genreList.setEnabled(false);
+        availablePropertiesList.setEnabled(false);
+        genrePropertiesDisplay.setText("⏳ Cargando la base de conocimiento...");
+        genreImageLabel.setText("⏳ Cargando imágenes...");
+        searchResultsDisplay.setText("⏳ Cargando propiedades...");
+        statisticsDisplay.setText("⏳ Cargando estadísticas...");
+        taxonomyStatusLabel.setText("Cargando taxonomía...");
+    }
+    
+    /**
+     * Runs the slow startup phases off the event thread. The Prolog files are
+     * consulted while the genre images are preloaded; once the knowledge base
+     * is in, the genre list, the property list and the taxonomy index are
+     * retrieved in parallel and each component is filled as soon as its data
+     * arrives. With -Dzoologia.warmup=true the service hot paths are run
+     * once everything is loaded, before the window counts as interactive.
+     * The startup report is printed when everything is in place.
+     */
+    private void startBackgroundInitialization() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService startupExecutor = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Executor eventThread = SwingUtilities::invokeLater;
+        
+        CompletableFuture<Void> knowledgeBaseLoaded = CompletableFuture.runAsync(
+            () -> startupProfiler.run("Consult Prolog files", this::loadKnowledgeBase), startupExecutor);
+        CompletableFuture<Void> imagesPreloaded = CompletableFuture.runAsync(
+            () -> startupProfiler.run("Preload genre images", this::preloadGenreImages), startupExecutor);
+        
+        // Everything the event thread reads from the indexes is built here first, so it never waits on a build
+        CompletableFuture<TaxonomyIndex> taxonomyIndexed = knowledgeBaseLoaded
+            .thenApplyAsync(ignored -> startupProfiler.time("Build taxonomy index",
+                musicGenreService::getTaxonomyIndex), startupExecutor);
+        CompletableFuture<Void> labelsLoaded = taxonomyIndexed
+            .thenRunAsync(() -> startupProfiler.run("Build display labels",
+                musicGenreService::getDisplayLabels), startupExecutor)
+            .thenRunAsync(() -> {
+                displayLabelsReady = true;
+                genreList.repaint();
+                availablePropertiesList.repaint();
+            }, eventThread);
+        
+        // The first genre is selected as soon as the list is filled, and showing it reads the labels
+        CompletableFuture<Void> genresLoaded = knowledgeBaseLoaded
+            .thenApplyAsync(ignored -> startupProfiler.time("Retrieve genre list",
+                musicGenreService::getAllMusicGenres), startupExecutor)
+            .thenCombine(labelsLoaded, (genres, ignored) -> genres)
+            .thenAcceptAsync(genres -> startupProfiler.run("Fill genre list",
+                () -> loadGenreData(genres)), eventThread);
+        CompletableFuture<Void> propertiesLoaded = knowledgeBaseLoaded
+            .thenApplyAsync(ignored -> startupProfiler.time("Retrieve property list",
+                musicGenreService::getAllAvailableProperties), startupExecutor)
+            .thenAcceptAsync(properties -> startupProfiler.run("Fill property list",
+                () -> loadPropertyData(properties)), eventThread);
+        CompletableFuture<Void> taxonomyLoaded = taxonomyIndexed
+            .thenApplyAsync(taxonomyIndex -> {
+                startupProfiler.run("Compute knowledge base statistics", musicGenreService::getKnowledgeBaseStatistics);
+                return taxonomyIndex;
+            }, startupExecutor)
+            .thenAcceptAsync(taxonomyIndex -> startupProfiler.run("Fill taxonomy tree and statistics",
+                () -> loadTaxonomyTree(taxonomyIndex)), eventThread);
+        CompletableFuture<Void> descriptionsIndexed = knowledgeBaseLoaded
+            .thenRunAsync(() -> startupProfiler.run("Build description index",
+                musicGenreService::getDescriptionIndex), startupExecutor);
+        CompletableFuture<Void> ancestorsIndexed = knowledgeBaseLoaded
+            .thenRunAsync(() -> startupProfiler.run("Build ancestor table",
+                musicGenreService::getAncestorTable), startupExecutor);
+        CompletableFuture<Void> facetsCounted = knowledgeBaseLoaded
+            .thenApplyAsync(ignored -> startupProfiler.time("Count property facets",
+                () -> musicGenreService.getPropertyFacetCounts(new String[0], "todas")), startupExecutor)
+            .thenAcceptAsync(facetCounts -> {
+                // Counts for the empty selection; a selection made meanwhile has its own
+                if (selectedPropertiesModel.isEmpty() && getSelectedSearchCriteria().equals("todas")) {
+                    propertyFacetCounts = facetCounts;
+                    availablePropertiesList.repaint();
+                }
+            }, eventThread);
+        
+        CompletableFuture<Void> ready = CompletableFuture.allOf(genresLoaded, propertiesLoaded, taxonomyLoaded,
+                descriptionsIndexed, ancestorsIndexed, facetsCounted, imagesPreloaded);
+        if (ServiceWarmup.isEnabled()) {
+            ready = ready.thenRunAsync(() -> startupProfiler.run("Warm up service",
+                () -> new ServiceWarmup(musicGenreService).run(ServiceWarmup.roundsFromSystemProperty())),
+                startupExecutor);
+        }
+        
+        ready.whenCompleteAsync((ignored, error) -> {
+            startupExecutor.shutdown();
+            if (error != null) {
+                System.err.println("Error during startup: " + error.getMessage());
+                error.printStackTrace();
+                taxonomyStatusLabel.setText("Error cargando la taxonomía");
+            }
+            if (startupProfiler.markInteractive()) {
+                System.out.println(startupProfiler.formatReport());
+            }
+            if (Zoologia.isExitWhenReady()) {
+                Zoologia.probeAndExit(musicGenreService);
+            }
+        }, eventThread);
+    }
+    
     /**
      * Loads the Prolog knowledge base files
      */
@@ -138,8 +316,6 @@ public class MusicGenreGUI extends JFrame {
         
         setupGenreListSection(leftCard);
         setupGenreImageSection(rightCard);
-        
-        loadGenreData();
     }
     
     /**
@@ -205,8 +381,6 @@ public class MusicGenreGUI extends JFrame {
         
         setupPropertySelectionSection(leftCard);
         setupSearchResultsSection(rightCard);
-        
-        loadPropertyData();
     }
     
     /**
@@ -219,6 +393,7 @@ public class MusicGenreGUI extends JFrame {
         parentCard.add(availablePropertiesLabel);
         
         availablePropertiesList = createStyledList(availablePropertiesModel);
+        setupPropertyFacetRenderer();
         JScrollPane availablePropertiesScrollPane = createScrollPane(availablePropertiesList, 0, 30, 348, 200);
         parentCard.add(availablePropertiesScrollPane);
         
@@ -237,10 +412,35 @@ public class MusicGenreGUI extends JFrame {
         // Search criteria selection
         setupSearchCriteriaSection(parentCard);
         
+        // Boolean expression search
+        setupExpressionSection(parentCard);
+        
         // Property selection listener
         availablePropertiesList.addListSelectionListener(this::handleSinglePropertySelection);
     }
     
+    /**
+     * Shows next to each available property how many results the search
+     * would give with it added, and greys out the ones that would give none
+     */
+    private void setupPropertyFacetRenderer() {
+        availablePropertiesList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                Integer facetCount = propertyFacetCounts.get(String.valueOf(value));
+                if (facetCount != null) {
+                    setText(value + "  (" + facetCount + ")");
+                    if (facetCount == 0 && !isSelected) {
+                        setForeground(SECONDARY_TEXT_COLOR);
+                    }
+                }
+                return this;
+            }
+        });
+    }
+    
     /**
      * Sets up the property control buttons
      */
@@ -274,6 +474,7 @@ public class MusicGenreGUI extends JFrame {
         searchCriteriaComboBox.setBounds(0, 500, 200, 30);
         searchCriteriaComboBox.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
         searchCriteriaComboBox.setBackground(CARD_COLOR);
+        searchCriteriaComboBox.addActionListener(e -> updatePropertyFacets());
         parentCard.add(searchCriteriaComboBox);
         
         JButton executeSearchButton = createStyledButton("🔍 Buscar", 16);
@@ -282,6 +483,41 @@ public class MusicGenreGUI extends JFrame {
         parentCard.add(executeSearchButton);
     }
     
+    /**
+     * Sets up the boolean expression search section
+     */
+    private void setupExpressionSection(JPanel parentCard) {
+        JLabel expressionLabel = createStyledLabel("Expresión (Y / O / NO, paréntesis)", 16, true);
+        expressionLabel.setBounds(0, 540, 348, 25);
+        parentCard.add(expressionLabel);
+        
+        expressionField.setBounds(0, 568, 208, 28);
+        expressionField.setFont(new Font("SF Pro Text", Font.PLAIN, 12));
+        expressionField.addActionListener(e -> performExpressionSearch());
+        parentCard.add(expressionField);
+        
+        JComboBox<String> expressionScopeComboBox = new JComboBox<>(expressionScopeModel);
+        expressionScopeComboBox.setBounds(216, 568, 132, 28);
+        expressionScopeComboBox.setFont(new Font("SF Pro Text", Font.PLAIN, 12));
+        expressionScopeComboBox.setBackground(CARD_COLOR);
+        expressionScopeComboBox.setToolTipText("Buscar solo entre los subgéneros del género elegido");
+        parentCard.add(expressionScopeComboBox);
+        
+        String[] operators = {"Y", "O", "Y NO"};
+        for (int i = 0; i < operators.length; i++) {
+            String operator = operators[i];
+            JButton operatorButton = createStyledButton("+ " + operator, 12);
+            operatorButton.setBounds(i * 72, 600, 66, 28);
+            operatorButton.addActionListener(e -> appendToExpression(operator));
+            parentCard.add(operatorButton);
+        }
+        
+        JButton evaluateButton = createStyledButton("🔍 Evaluar", 14);
+        evaluateButton.setBounds(216, 600, 132, 28);
+        evaluateButton.addActionListener(e -> performExpressionSearch());
+        parentCard.add(evaluateButton);
+    }
+    
     /**
      * Sets up the search results section
      */
@@ -291,12 +527,58 @@ public class MusicGenreGUI extends JFrame {
         parentCard.add(searchResultsLabel);
         
         setupTextArea(searchResultsDisplay, 13, false);
-        JScrollPane searchResultsScrollPane = createScrollPane(searchResultsDisplay, 16, 56, 468, 588);
+        JScrollPane searchResultsScrollPane = createScrollPane(searchResultsDisplay, 16, 56, 468, 220);
         parentCard.add(searchResultsScrollPane);
         
+        setupSearchResultsTable();
+        parentCard.add(createScrollPane(searchResultsTable, 16, 286, 468, 358));
+        
         displayInitialSearchInstructions();
     }
     
+    /**
+     * Sets up the table of found genres: a click on a column header sorts by
+     * it, and a double click or Enter on a row opens the genre in the explorer
+     */
+    private void setupSearchResultsTable() {
+        searchResultsTable.setFont(new Font("SF Pro Text", Font.PLAIN, 12));
+        searchResultsTable.setRowHeight(22);
+        searchResultsTable.setBackground(CARD_COLOR);
+        searchResultsTable.setSelectionBackground(PRIMARY_COLOR);
+        searchResultsTable.setSelectionForeground(Color.WHITE);
+        searchResultsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        searchResultsTable.setFillsViewportHeight(true);
+        searchResultsTable.getTableHeader().setReorderingAllowed(false);
+        searchResultsTable.getTableHeader().setCursor(new Cursor(Cursor.HAND_CURSOR));
+        searchResultsTable.getTableHeader().setToolTipText("Haga clic para ordenar por esta columna");
+        
+        searchResultsTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = searchResultsTable.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    sortSearchResults(searchResultsTable.convertColumnIndexToModel(column));
+                }
+            }
+        });
+        searchResultsTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelectedSearchResult();
+                }
+            }
+        });
+        searchResultsTable.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT)
+            .put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "openGenre");
+        searchResultsTable.getActionMap().put("openGenre", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                openSelectedSearchResult();
+            }
+        });
+    }
+    
     /**
      * Sets up the taxonomy tree tab
      */
@@ -309,12 +591,138 @@ public class MusicGenreGUI extends JFrame {
         taxonomyLabel.setForeground(TEXT_COLOR);
         taxonomyTab.add(taxonomyLabel);
         
-        JLabel taxonomyImageLabel = createTaxonomyImageLabel();
-        JScrollPane taxonomyScrollPane = new JScrollPane(taxonomyImageLabel);
-        taxonomyScrollPane.setBounds(20, 60, 880, 600);
+        taxonomySearchField.setBounds(460, 20, 290, 30);
+        taxonomySearchField.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        taxonomySearchField.addActionListener(e -> findInTaxonomyTree());
+        taxonomyTab.add(taxonomySearchField);
+        
+        JButton findButton = createStyledButton("🔍 Buscar", 14);
+        findButton.setBounds(760, 20, 140, 30);
+        findButton.addActionListener(e -> findInTaxonomyTree());
+        taxonomyTab.add(findButton);
+        
+        setupTaxonomyTree();
+        JScrollPane taxonomyScrollPane = new JScrollPane(taxonomyTree);
+        taxonomyScrollPane.setBounds(20, 60, 880, 570);
         taxonomyScrollPane.setBorder(BorderFactory.createLineBorder(BORDER_COLOR));
         taxonomyScrollPane.getViewport().setBackground(CARD_COLOR);
         taxonomyTab.add(taxonomyScrollPane);
+        
+        taxonomyStatusLabel.setBounds(20, 636, 880, 20);
+        taxonomyStatusLabel.setFont(new Font("SF Pro Text", Font.PLAIN, 12));
+        taxonomyStatusLabel.setForeground(SECONDARY_TEXT_COLOR);
+        taxonomyTab.add(taxonomyStatusLabel);
+    }
+    
+    /**
+     * Configures the taxonomy tree appearance
+     */
+    private void setupTaxonomyTree() {
+        taxonomyTree.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        taxonomyTree.setBackground(CARD_COLOR);
+        taxonomyTree.setRootVisible(false);
+        taxonomyTree.setShowsRootHandles(true);
+        taxonomyTree.setLargeModel(true);
+        taxonomyTree.setRowHeight(22);
+        taxonomyTree.setCellRenderer(new DefaultTreeCellRenderer() {
+            @Override
+            public Component getTreeCellRendererComponent(JTree tree, Object value, boolean selected,
+                    boolean expanded, boolean leaf, int row, boolean hasFocus) {
+                super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, hasFocus);
+                setText(formatDisplayText(String.valueOf(value)));
+                return this;
+            }
+        });
+    }
+    
+    /**
+     * Sets up the full-text search tab over genre descriptions
+     */
+    private void setupDescriptionSearchTab(JTabbedPane parentTabbedPane) {
+        JPanel descriptionTab = createModernPanel();
+        parentTabbedPane.addTab("📝 Buscar en Descripciones", descriptionTab);
+        
+        JLabel descriptionSearchLabel = createStyledLabel("Búsqueda en Descripciones", 20, true);
+        descriptionSearchLabel.setBounds(40, 20, 400, 30);
+        descriptionSearchLabel.setForeground(TEXT_COLOR);
+        descriptionTab.add(descriptionSearchLabel);
+        
+        descriptionSearchField.setBounds(460, 20, 290, 30);
+        descriptionSearchField.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        descriptionSearchField.addActionListener(e -> performDescriptionSearch());
+        descriptionTab.add(descriptionSearchField);
+        
+        JButton searchButton = createStyledButton("🔍 Buscar", 14);
+        searchButton.setBounds(760, 20, 140, 30);
+        searchButton.addActionListener(e -> performDescriptionSearch());
+        descriptionTab.add(searchButton);
+        
+        setupTextArea(descriptionResultsDisplay, 13, false);
+        descriptionResultsDisplay.setText("Escriba una o varias palabras, por ejemplo \"afroamericano\" o \"improvisacion\".\n"
+            + "Se ignoran mayúsculas y acentos, y los géneros se ordenan por relevancia.");
+        JScrollPane descriptionScrollPane = createScrollPane(descriptionResultsDisplay, 20, 60, 880, 596);
+        descriptionTab.add(descriptionScrollPane);
+    }
+    
+    /**
+     * Sets up the statistics tab
+     */
+    private void setupStatisticsTab(JTabbedPane parentTabbedPane) {
+        JPanel statisticsTab = createModernPanel();
+        parentTabbedPane.addTab("📊 Estadísticas", statisticsTab);
+        
+        JPanel leftCard = createCard(20, 20, 380, 660);
+        JPanel rightCard = createCard(420, 20, 500, 660);
+        
+        statisticsTab.add(leftCard);
+        statisticsTab.add(rightCard);
+        
+        setupStatisticsOptionsSection(leftCard);
+        
+        JLabel statisticsResultsLabel = createStyledLabel("Conteo de Géneros", 18, true);
+        statisticsResultsLabel.setBounds(16, 16, 400, 30);
+        rightCard.add(statisticsResultsLabel);
+        
+        setupTextArea(statisticsDisplay, 13, false);
+        statisticsDisplay.setLineWrap(false);
+        JScrollPane statisticsScrollPane = createScrollPane(statisticsDisplay, 16, 56, 468, 588);
+        rightCard.add(statisticsScrollPane);
+    }
+    
+    /**
+     * Sets up the group-by options of the statistics tab
+     */
+    private void setupStatisticsOptionsSection(JPanel parentCard) {
+        JLabel functorLabel = createStyledLabel("Agrupar por", 16, true);
+        functorLabel.setBounds(0, 0, 300, 25);
+        parentCard.add(functorLabel);
+        
+        JComboBox<String> functorComboBox = new JComboBox<>(statisticsFunctorModel);
+        functorComboBox.setBounds(0, 30, 348, 30);
+        functorComboBox.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        functorComboBox.setBackground(CARD_COLOR);
+        parentCard.add(functorComboBox);
+        
+        JLabel subtreeLabel = createStyledLabel("Limitar a subárbol de", 16, true);
+        subtreeLabel.setBounds(0, 80, 300, 25);
+        parentCard.add(subtreeLabel);
+        
+        JComboBox<String> subtreeComboBox = new JComboBox<>(statisticsSubtreeModel);
+        subtreeComboBox.setBounds(0, 110, 348, 30);
+        subtreeComboBox.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        subtreeComboBox.setBackground(CARD_COLOR);
+        parentCard.add(subtreeComboBox);
+        
+        includeInheritedCheckBox.setBounds(0, 160, 348, 25);
+        includeInheritedCheckBox.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        includeInheritedCheckBox.setBackground(CARD_COLOR);
+        includeInheritedCheckBox.setSelected(true);
+        parentCard.add(includeInheritedCheckBox);
+        
+        JButton computeButton = createStyledButton("📊 Calcular", 16);
+        computeButton.setBounds(0, 200, 160, 30);
+        computeButton.addActionListener(e -> performStatisticsAggregation());
+        parentCard.add(computeButton);
     }
     
     // === EVENT HANDLERS ===
@@ -389,6 +797,13 @@ public class MusicGenreGUI extends JFrame {
      * Loads and displays the image for a genre
      */
     private void loadGenreImage(String genreName) {
+        ImageIcon preloadedImage = preloadedImages.get(genreName);
+        if (preloadedImage != null) {
+            genreImageLabel.setIcon(preloadedImage);
+            genreImageLabel.setText("");
+            return;
+        }
+        
         try {
             ImageIcon genreImage = new ImageIcon("images/generos/" + genreName + ".jpg");
             if (genreImage.getIconWidth() == -1) {
@@ -434,27 +849,120 @@ public class MusicGenreGUI extends JFrame {
         String formattedProperty = formatPropertyText(propertyName);
         resultsText.append("📌 Propiedad: ").append(formattedProperty).append("\n\n");
         
+        showResultsTable(matchingGenres, new String[]{propertyName});
         if (matchingGenres != null && matchingGenres.length > 0) {
-            resultsText.append("🎵 Géneros encontrados:\n");
-            resultsText.append("─".repeat(20)).append("\n");
-            
-            for (String genre : matchingGenres) {
-                String formattedGenre = formatDisplayText(genre);
-                resultsText.append("• ").append(formattedGenre).append("\n");
-            }
-            resultsText.append("\n✓ Total: ").append(matchingGenres.length).append(" géneros");
+            resultsText.append("✓ Total: ").append(matchingGenres.length).append(" géneros");
             
             double percentage = (matchingGenres.length * 100.0) / musicGenreService.getTotalGenreCount();
             resultsText.append(String.format("\n📊 Representa el %.1f%% del total", percentage));
+            resultsText.append(RESULTS_TABLE_HINT);
             
         } else {
             resultsText.append("❌ No se encontraron géneros con esta propiedad.\n\n");
             resultsText.append("💡 Intente seleccionar otra propiedad o use búsqueda múltiple.");
         }
         
+        resultsText.append(incompleteSearchNotice());
         searchResultsDisplay.setText(resultsText.toString());
     }
     
+    /**
+     * Describes why the last search on this thread returned incomplete results
+     * @return a warning paragraph, or an empty string if the search finished
+     */
+    private String incompleteSearchNotice() {
+        switch (musicGenreService.getLastCallStatus()) {
+            case PARTIAL:
+                return "\n\n⚠️ Búsqueda incompleta: se alcanzó el límite de tiempo y se muestran los géneros revisados hasta entonces.";
+            case INFERENCE_LIMIT_EXCEEDED:
+                return "\n\n⚠️ Búsqueda incompleta: una consulta superó el límite de inferencias.";
+            case TIMED_OUT:
+                return "\n\n⚠️ Búsqueda incompleta: una consulta superó el límite de tiempo.";
+            default:
+                return "";
+        }
+    }
+    
+    /**
+     * Searches the genre descriptions for the words in the description search field
+     */
+    private void performDescriptionSearch() {
+        String queryText = descriptionSearchField.getText().trim();
+        if (queryText.isEmpty()) {
+            descriptionResultsDisplay.setText("Por favor, escriba al menos una palabra para buscar.");
+            return;
+        }
+        
+        long startTime = System.nanoTime();
+        Map<String, Double> matchingGenres = musicGenreService.findGenresByDescription(queryText, 50);
+        double elapsedMillis = (System.nanoTime() - startTime) / 1e6;
+        
+        StringBuilder resultsText = new StringBuilder();
+        resultsText.append("📝 BÚSQUEDA EN DESCRIPCIONES\n");
+        resultsText.append("═".repeat(50)).append("\n\n");
+        resultsText.append("📋 Palabras: ").append(queryText).append("\n\n");
+        
+        if (matchingGenres.isEmpty()) {
+            resultsText.append("❌ Ninguna descripción contiene estas palabras.\n\n");
+            resultsText.append("💡 Pruebe con otras palabras o con menos palabras.");
+        } else {
+            TaxonomyIndex taxonomyIndex = musicGenreService.getTaxonomyIndex();
+            int rank = 1;
+            for (Map.Entry<String, Double> match : matchingGenres.entrySet()) {
+                int genreId = taxonomyIndex.idOf(match.getKey());
+                resultsText.append(String.format("%2d. %s  (relevancia %.2f)\n", rank++,
+                    formatDisplayText(match.getKey()), match.getValue()));
+                if (genreId >= 0) {
+                    resultsText.append("    ").append(taxonomyIndex.descriptionOf(genreId).replace("_", " ")).append("\n");
+                }
+                resultsText.append("\n");
+            }
+            resultsText.append("✓ Total mostrados: ").append(matchingGenres.size()).append(" géneros");
+        }
+        resultsText.append(String.format("\n⏱️ Tiempo de búsqueda: %.2f ms", elapsedMillis));
+        resultsText.append(incompleteSearchNotice());
+        
+        descriptionResultsDisplay.setText(resultsText.toString());
+        descriptionResultsDisplay.setCaretPosition(0);
+    }
+    
+    /**
+     * Counts genres by the selected functor and shows the result as a bar chart
+     */
+    private void performStatisticsAggregation() {
+        String functor = (String) statisticsFunctorModel.getSelectedItem();
+        if (functor == null) {
+            statisticsDisplay.setText("La taxonomía todavía se está cargando.");
+            return;
+        }
+        
+        String subtreeRoot = statisticsSubtreeModel.getIndexOf(statisticsSubtreeModel.getSelectedItem()) > 0
+            ? (String) statisticsSubtreeModel.getSelectedItem() : null;
+        boolean includeInherited = includeInheritedCheckBox.isSelected();
+        Map<String, Integer> groupCounts = musicGenreService.countGenresByProperty(functor, includeInherited, subtreeRoot);
+        
+        StringBuilder statisticsText = new StringBuilder();
+        statisticsText.append("📊 GÉNEROS POR ").append(functor.toUpperCase().replace("_", " ")).append("\n");
+        statisticsText.append("═".repeat(40)).append("\n\n");
+        statisticsText.append(subtreeRoot != null ? "🌳 Subárbol: " + formatDisplayText(subtreeRoot) : "🌳 Toda la taxonomía")
+                      .append(includeInherited ? " (con herencia)" : " (solo propiedades directas)").append("\n\n");
+        
+        if (groupCounts.isEmpty()) {
+            statisticsText.append("❌ Ningún género tiene esta propiedad.");
+        } else {
+            int maxCount = groupCounts.values().iterator().next();
+            for (Map.Entry<String, Integer> groupCount : groupCounts.entrySet()) {
+                int barLength = Math.max(1, groupCount.getValue() * 20 / maxCount);
+                statisticsText.append(String.format("%-24s %4d  %s\n",
+                    formatDisplayText(groupCount.getKey()), groupCount.getValue(), "█".repeat(barLength)));
+            }
+            statisticsText.append("\n✓ Total: ").append(groupCounts.size()).append(" valores distintos");
+        }
+        
+        statisticsDisplay.setText(statisticsText.toString());
+        statisticsDisplay.setCaretPosition(0);
+    }
+    
     // === PROPERTY MANAGEMENT METHODS ===
     
     /**
@@ -493,6 +1001,7 @@ public class MusicGenreGUI extends JFrame {
      * Updates the search results based on selected properties
      */
     private void updateSearchResults() {
+        updatePropertyFacets();
         if (selectedPropertiesModel.isEmpty()) {
             displayInitialSearchInstructions();
         } else {
@@ -509,16 +1018,99 @@ public class MusicGenreGUI extends JFrame {
             return;
         }
         
-        // Convert model to array
-        String[] selectedProperties = new String[selectedPropertiesModel.getSize()];
-        for (int i = 0; i < selectedPropertiesModel.getSize(); i++) {
-            selectedProperties[i] = selectedPropertiesModel.getElementAt(i);
-        }
-        
+        String[] selectedProperties = getSelectedProperties();
         String searchCriteria = getSelectedSearchCriteria();
         String[] searchResults = musicGenreService.findGenresWithMultipleProperties(selectedProperties, searchCriteria);
         
         displayMultiplePropertyResults(selectedProperties, searchCriteria, searchResults);
+        searchResultsDisplay.append(incompleteSearchNotice());
+    }
+    
+    /**
+     * Recomputes, for the current selection and search type, how many results
+     * each available property would give if it were added
+     */
+    private void updatePropertyFacets() {
+        if (allProperties == null || taxonomyTreeModel == null) {
+            return;
+        }
+        propertyFacetCounts = musicGenreService.getPropertyFacetCounts(getSelectedProperties(),
+            getSelectedSearchCriteria());
+        availablePropertiesList.repaint();
+    }
+    
+    /**
+     * Appends the property selected in the available list to the expression
+     */
+    private void appendToExpression(String operator) {
+        String selectedProperty = availablePropertiesList.getSelectedValue();
+        if (selectedProperty == null) {
+            searchResultsDisplay.setText("Por favor, seleccione una propiedad de la lista para añadirla a la expresión.");
+            return;
+        }
+        
+        String expressionText = expressionField.getText().trim();
+        if (expressionText.isEmpty()) {
+            expressionText = operator.endsWith("NO") ? "NO " + selectedProperty : selectedProperty;
+        } else {
+            expressionText = expressionText + " " + operator + " " + selectedProperty;
+        }
+        expressionField.setText(expressionText);
+    }
+    
+    /**
+     * Evaluates the boolean expression typed or built in the expression field
+     */
+    private void performExpressionSearch() {
+        String expressionText = expressionField.getText().trim();
+        if (expressionText.isEmpty()) {
+            searchResultsDisplay.setText("Por favor, escriba una expresión, por ejemplo:\n"
+                + "usa(sintetizador) Y energia(alta) Y NO origen_pais(usa)");
+            return;
+        }
+        
+        String subtreeRoot = expressionScopeModel.getIndexOf(expressionScopeModel.getSelectedItem()) > 0
+            ? (String) expressionScopeModel.getSelectedItem() : null;
+        try {
+            String[] results = musicGenreService.findGenresMatchingExpression(expressionText, subtreeRoot);
+            displayExpressionResults(expressionText, subtreeRoot, results);
+        } catch (IllegalArgumentException e) {
+            searchResultsTable.setModel(SearchResultsTableModel.empty());
+            searchResultsDisplay.setText("❌ EXPRESIÓN NO VÁLIDA\n" + "─".repeat(20) + "\n"
+                + e.getMessage() + "\n\n"
+                + "💡 Use Y, O y NO entre propiedades y paréntesis para agrupar, por ejemplo:\n"
+                + "(usa(guitarra) O usa(bajo)) Y NO energia(baja)");
+        }
+    }
+    
+    /**
+     * Displays the results of a boolean expression search
+     */
+    private void displayExpressionResults(String expressionText, String subtreeRoot, String[] results) {
+        StringBuilder resultsText = new StringBuilder();
+        
+        resultsText.append("🧮 BÚSQUEDA POR EXPRESIÓN\n");
+        resultsText.append("═".repeat(50)).append("\n\n");
+        resultsText.append("📋 Expresión: ").append(expressionText).append("\n");
+        if (subtreeRoot != null) {
+            resultsText.append("🌳 Solo subgéneros de: ").append(formatDisplayText(subtreeRoot)).append("\n");
+        }
+        resultsText.append("🔗 Incluye propiedades heredadas de los géneros padre\n\n");
+        
+        showResultsTable(results, null);
+        if (results != null && results.length > 0) {
+            resultsText.append("✓ Total encontrados: ").append(results.length).append(" géneros");
+            double percentage = (results.length * 100.0) / musicGenreService.getTotalGenreCount();
+            resultsText.append(String.format("\n📈 Representa el %.1f%% del total de géneros", percentage));
+            resultsText.append(RESULTS_TABLE_HINT);
+        } else {
+            resultsText.append("❌ NINGÚN RESULTADO\n");
+            resultsText.append("─".repeat(20)).append("\n");
+            resultsText.append("Ningún género cumple esta expresión.");
+        }
+        
+        searchResultsDisplay.setText(resultsText.toString());
+        searchResultsDisplay.setCaretPosition(0);
     }
     
     /**
@@ -544,21 +1136,15 @@ public class MusicGenreGUI extends JFrame {
         
         resultsText.append(criteriaIcon).append(" Búsqueda: Géneros que ").append(criteriaDescription).append("\n\n");
         
+        showResultsTable(results, searchProperties);
         if (results != null && results.length > 0) {
-            resultsText.append("🎵 GÉNEROS ENCONTRADOS:\n");
-            resultsText.append("─".repeat(30)).append("\n");
-            
-            for (int i = 0; i < results.length; i++) {
-                String formattedGenre = formatDisplayText(results[i]);
-                resultsText.append(String.format("%2d. %s\n", i + 1, formattedGenre));
-            }
-            
-            resultsText.append("\n").append("✓ Total encontrados: ").append(results.length).append(" géneros");
+            resultsText.append("✓ Total encontrados: ").append(results.length).append(" géneros");
             
             if (searchCriteria.equals("todas") && searchProperties.length > 1) {
                 double percentage = (results.length * 100.0) / musicGenreService.getTotalGenreCount();
                 resultsText.append(String.format("\n📈 Representa el %.1f%% del total de géneros", percentage));
             }
+            resultsText.append(RESULTS_TABLE_HINT);
             
         } else {
             resultsText.append("❌ NINGÚN RESULTADO\n");
@@ -573,34 +1159,207 @@ public class MusicGenreGUI extends JFrame {
         searchResultsDisplay.setText(resultsText.toString());
     }
     
+    /**
+     * Shows the genres of a search in the results table, in the order the
+     * service returned them
+     * @param genres the genres found, or null if the search failed
+     * @param countedProperties the properties whose matches are counted per genre, or null to leave the column empty
+     */
+    private void showResultsTable(String[] genres, String[] countedProperties) {
+        if (genres == null || genres.length == 0) {
+            searchResultsTable.setModel(SearchResultsTableModel.empty());
+            return;
+        }
+        int[] matchCounts = countedProperties == null ? null
+            : musicGenreService.countPropertyMatches(genres, countedProperties);
+        searchResultsTable.setModel(new SearchResultsTableModel(musicGenreService.getTaxonomyIndex(),
+            musicGenreService.getAncestorTable(), musicGenreService::getGenreLabel, genres, matchCounts));
+    }
+    
+    /**
+     * Sorts the results table by a column, or reverses it if already sorted by it
+     */
+    private void sortSearchResults(int column) {
+        SearchResultsTableModel model = (SearchResultsTableModel) searchResultsTable.getModel();
+        model.toggleSort(column);
+        for (int viewColumn = 0; viewColumn < searchResultsTable.getColumnCount(); viewColumn++) {
+            TableColumn tableColumn = searchResultsTable.getColumnModel().getColumn(viewColumn);
+            tableColumn.setHeaderValue(model.getColumnName(tableColumn.getModelIndex()));
+        }
+        searchResultsTable.getTableHeader().repaint();
+    }
+    
+    /**
+     * Opens the genre of the selected results row in the genre explorer
+     */
+    private void openSelectedSearchResult() {
+        int row = searchResultsTable.getSelectedRow();
+        if (row < 0) {
+            return;
+        }
+        String genre = ((SearchResultsTableModel) searchResultsTable.getModel()).getGenreNameAt(row);
+        mainTabbedPane.setSelectedIndex(0);
+        genreList.setSelectedValue(genre, true);
+    }
+    
     // === DATA LOADING METHODS ===
     
     /**
-     * Loads genre data from the service
+     * Fills the genre list with the genres retrieved from the service
      */
-    private void loadGenreData() {
-        allGenres = musicGenreService.getAllMusicGenres();
+    private void loadGenreData(String[] genres) {
+        allGenres = genres;
         if (allGenres != null) {
             for (String genre : allGenres) {
                 genreListModel.addElement(genre.trim());
             }
         }
         
+        genreList.setEnabled(true);
+        genrePropertiesDisplay.setText("");
         if (genreListModel.getSize() > 0) {
             genreList.setSelectedIndex(0);
         }
     }
     
     /**
-     * Loads property data from the service
+     * Fills the available property list with the properties retrieved from the service
      */
-    private void loadPropertyData() {
-        allProperties = musicGenreService.getAllAvailableProperties();
+    private void loadPropertyData(String[] properties) {
+        allProperties = properties;
         if (allProperties != null) {
             for (String property : allProperties) {
                 availablePropertiesModel.addElement(property.trim());
             }
         }
+        
+        availablePropertiesList.setEnabled(true);
+        displayInitialSearchInstructions();
+    }
+    
+    /**
+     * Installs the lazy tree model and the statistics options for a built taxonomy index
+     */
+    private void loadTaxonomyTree(TaxonomyIndex taxonomyIndex) {
+        taxonomyTreeModel = new TaxonomyTreeModel(taxonomyIndex);
+        taxonomyTree.setModel(taxonomyTreeModel);
+        taxonomyStatusLabel.setText(taxonomyIndex.size() + " géneros en la taxonomía");
+        showKnowledgeBaseErrors(taxonomyIndex.validationErrors());
+        loadStatisticsOptions(taxonomyIndex);
+    }
+    
+    /**
+     * Warns in the taxonomy status line about the problems found in the
+     * frames; the full list is shown as its tooltip
+     */
+    private void showKnowledgeBaseErrors(java.util.List<String> errors) {
+        if (errors.isEmpty()) {
+            taxonomyStatusLabel.setToolTipText(null);
+            return;
+        }
+        taxonomyStatusLabel.setText(taxonomyStatusLabel.getText() + "  ⚠️ " + errors.size()
+            + (errors.size() == 1 ? " error" : " errores") + " en la base de conocimiento (ver detalle)");
+        StringBuilder tooltip = new StringBuilder("<html>");
+        for (String error : errors) {
+            tooltip.append("• ").append(error.replace("&", "&amp;").replace("<", "&lt;")).append("<br>");
+        }
+        taxonomyStatusLabel.setToolTipText(tooltip.append("</html>").toString());
+    }
+    
+    /**
+     * Decodes the genre images found on disk so the first selections show them without delay
+     */
+    private void preloadGenreImages() {
+        for (String imageDirectory : new String[]{"images/generos", "images"}) {
+            File[] imageFiles = new File(imageDirectory).listFiles((directory, name) -> name.endsWith(".jpg"));
+            if (imageFiles == null) continue;
+            
+            for (File imageFile : imageFiles) {
+                String genreName = imageFile.getName().substring(0, imageFile.getName().length() - ".jpg".length());
+                ImageIcon genreImage = new ImageIcon(imageFile.getPath());
+                if (genreImage.getIconWidth() != -1) {
+                    preloadedImages.putIfAbsent(genreName, genreImage);
+                }
+            }
+        }
+        System.out.println("Preloaded " + preloadedImages.size() + " genre images");
+    }
+    
+    /**
+     * Fills the statistics tab selectors and the expression scope once the taxonomy index is available
+     */
+    private void loadStatisticsOptions(TaxonomyIndex taxonomyIndex) {
+        for (String functor : musicGenreService.getPropertyFunctors()) {
+            statisticsFunctorModel.addElement(functor);
+        }
+        if (statisticsFunctorModel.getIndexOf("usa") >= 0) {
+            statisticsFunctorModel.setSelectedItem("usa");
+        }
+        
+        statisticsDisplay.setText("📚 BASE DE CONOCIMIENTO\n" + "═".repeat(40) + "\n\n"
+            + musicGenreService.getKnowledgeBaseStatistics().formatSummary());
+        
+        statisticsSubtreeModel.addElement("(todos los géneros)");
+        expressionScopeModel.addElement("(todos los géneros)");
+        for (int genreId = 0; genreId < taxonomyIndex.size(); genreId++) {
+            if (taxonomyIndex.childCount(genreId) > 0) {
+                statisticsSubtreeModel.addElement(taxonomyIndex.nameOf(genreId));
+                expressionScopeModel.addElement(taxonomyIndex.nameOf(genreId));
+            }
+        }
+    }
+    
+    /**
+     * Searches the taxonomy off the event thread and selects the next match.
+     * Repeating the same search moves on to the following match.
+     */
+    private void findInTaxonomyTree() {
+        if (taxonomyTreeModel == null) {
+            return;
+        }
+        
+        String searchText = taxonomySearchField.getText().trim();
+        if (searchText.equals(lastTaxonomySearch) && taxonomySearchMatches.length > 0) {
+            taxonomySearchPosition = (taxonomySearchPosition + 1) % taxonomySearchMatches.length;
+            selectTaxonomySearchMatch();
+            return;
+        }
+        
+        taxonomyStatusLabel.setText("Buscando \"" + searchText + "\"...");
+        new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                return musicGenreService.getTaxonomyIndex().findByName(searchText);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    lastTaxonomySearch = searchText;
+                    taxonomySearchMatches = get();
+                    taxonomySearchPosition = 0;
+                    if (taxonomySearchMatches.length == 0) {
+                        taxonomyStatusLabel.setText("No se encontraron géneros para \"" + searchText + "\"");
+                    } else {
+                        selectTaxonomySearchMatch();
+                    }
+                } catch (Exception e) {
+                    taxonomyStatusLabel.setText("Error buscando en la taxonomía");
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Expands the tree down to the current search match and selects it
+     */
+    private void selectTaxonomySearchMatch() {
+        TreePath matchPath = taxonomyTreeModel.pathTo(taxonomySearchMatches[taxonomySearchPosition]);
+        taxonomyTree.expandPath(matchPath.getParentPath());
+        taxonomyTree.setSelectionPath(matchPath);
+        taxonomyTree.scrollPathToVisible(matchPath);
+        taxonomyStatusLabel.setText("Coincidencia " + (taxonomySearchPosition + 1) + " de " + taxonomySearchMatches.length);
     }
     
     // === UTILITY METHODS ===
@@ -613,6 +1372,17 @@ public class MusicGenreGUI extends JFrame {
         return selectedIndex == 0 ? "todas" : "alguna";
     }
     
+    /**
+     * Gets the properties in the selected list
+     */
+    private String[] getSelectedProperties() {
+        String[] selectedProperties = new String[selectedPropertiesModel.getSize()];
+        for (int i = 0; i < selectedPropertiesModel.getSize(); i++) {
+            selectedProperties[i] = selectedPropertiesModel.getElementAt(i);
+        }
+        return selectedProperties;
+    }
+    
     /**
      * Formats property text for display
      */
@@ -620,13 +1390,11 @@ public class MusicGenreGUI extends JFrame {
         if (originalProperty == null || originalProperty.trim().isEmpty()) {
             return originalProperty;
         }
-        
-        if (originalProperty.contains(":")) {
-            return originalProperty.replace("_", " ");
+        if (!displayLabelsReady) {
+            return DisplayLabels.formatName(originalProperty.trim());
         }
         
-        String formatted = originalProperty.replace("_", " ");
-        return capitalizeWords(formatted);
+        return musicGenreService.getPropertyLabel(originalProperty.trim());
     }
     
     /**
@@ -634,38 +1402,18 @@ public class MusicGenreGUI extends JFrame {
      */
     private String formatDisplayText(String text) {
         if (text == null) return "";
-        
-        String formatted = text.replace("_", " ");
-        return capitalizeWords(formatted);
-    }
-    
-    /**
-     * Capitalizes the first letter of each word
-     */
-    private String capitalizeWords(String text) {
-        if (text == null || text.isEmpty()) return text;
-        
-        String[] words = text.split("\\s+");
-        StringBuilder result = new StringBuilder();
-        
-        for (int i = 0; i < words.length; i++) {
-            if (i > 0) result.append(" ");
-            
-            if (words[i].length() > 0) {
-                result.append(Character.toUpperCase(words[i].charAt(0)));
-                if (words[i].length() > 1) {
-                    result.append(words[i].substring(1).toLowerCase());
-                }
-            }
+        if (!displayLabelsReady) {
+            return DisplayLabels.formatName(text.trim());
         }
         
-        return result.toString();
+        return musicGenreService.getGenreLabel(text.trim());
     }
     
     /**
      * Displays initial search instructions
      */
     private void displayInitialSearchInstructions() {
+        searchResultsTable.setModel(SearchResultsTableModel.empty());
         searchResultsDisplay.setText(
             "🎯 BÚSQUEDA POR PROPIEDADES\n" +
             "═".repeat(35) + "\n\n" +
@@ -673,7 +1421,12 @@ public class MusicGenreGUI extends JFrame {
             "1. Seleccione propiedades de la lista izquierda\n" +
             "2. Haga clic en 'Agregar →' para añadirlas\n" +
             "3. Elija el tipo de búsqueda\n" +
-            "4. Los resultados aparecerán automáticamente\n\n" +
+            "4. Los resultados aparecerán automáticamente en la\n" +
+            "   tabla; haga clic en una columna para ordenar\n" +
+            "   El número junto a cada propiedad indica cuántos\n" +
+            "   resultados habría al agregarla\n" +
+            "5. Para excluir propiedades, escriba una expresión\n" +
+            "    con Y, O y NO y pulse '🔍 Evaluar'\n\n" +
             "💡 Puede seleccionar múltiples propiedades para\n" +
             "    búsquedas más específicas y detalladas."
         );
@@ -781,25 +1534,4 @@ public class MusicGenreGUI extends JFrame {
         
         return button;
     }
-    
-    private JLabel createTaxonomyImageLabel() {
-        JLabel taxonomyImage = new JLabel();
-        try {
-            ImageIcon taxonomyIcon = new ImageIcon("images/arbol_taxonomico.jpg");
-            if (taxonomyIcon.getIconWidth() == -1) {
-                taxonomyImage.setText("<html><div style='text-align: center; color: #9CA3AF; font-family: SF Pro Text;'>" +
-                            "<h2>Árbol Taxonómico</h2>" +
-                            "<p>Imagen no encontrada: images/arbol_taxonomico.jpg</p>" +
-                            "<p>Por favor, coloque la imagen del árbol taxonómico en la carpeta images/</p>" +
-                            "</div></html>");
-                taxonomyImage.setHorizontalAlignment(JLabel.CENTER);
-            } else {
-                taxonomyImage.setIcon(taxonomyIcon);
-            }
-        } catch (Exception e) {
-            taxonomyImage.setText("Error cargando imagen del árbol taxonómico");
-            taxonomyImage.setHorizontalAlignment(JLabel.CENTER);
-        }
-        return taxonomyImage;
-    }
 }
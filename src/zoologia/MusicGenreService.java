@@ -1,10 +1,16 @@
 package zoologia;
 
+import org.jpl7.PrologException;
 import org.jpl7.Query;
 import org.jpl7.Term;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
 /**
  * Service class that handles all business logic for music genre queries
@@ -12,7 +18,83 @@ import java.util.ArrayList;
  */
 public class MusicGenreService {
     
-    private Query currentQuery;
+    // Goal templates, parsed once and bound per call
+    private static final PreparedQuery CONSULT = new PreparedQuery("consult(File)", "File");
+    private static final PreparedQuery LOAD_INTO_MODULE = new PreparedQuery(
+        "cargar_base_en_modulo(File, Module)", "File", "Module");
+    private static final PreparedQuery UNLOAD_MODULE = new PreparedQuery("descargar_base_de_modulo(Module)", "Module");
+    private static final PreparedQuery INVALIDATE_TABLES = new PreparedQuery(
+        "(current_predicate(invalidar_tablas/1) -> invalidar_tablas(Module) ; true)", "Module");
+    private static final PreparedQuery ALL_GENRES = new PreparedQuery("obtener_todos_los_generos(GenreList)");
+    private static final PreparedQuery ALL_PROPERTIES = new PreparedQuery("todas_propiedades(PropertyList)");
+    private static final PreparedQuery GENRES_WITH_PROPERTY = new PreparedQuery("tiene_propiedad(Property, GenreList)", "Property");
+    private static final PreparedQuery GENRES_WITH_FORMATTED_PROPERTY = new PreparedQuery("buscar_propiedad_formateada(PropertyText, GenreList)", "PropertyText");
+    private static final PreparedQuery GENRE_DESCRIPTION = new PreparedQuery("obtiene_descripcion(Genre, Description)", "Genre");
+    private static final PreparedQuery FRAME_PROPERTIES = new PreparedQuery("frame(Genre, _, Properties, _)", "Genre");
+    private static final PreparedQuery GENRES_WITH_DIRECT_PROPERTY = new PreparedQuery(
+        "findall(Genre, (frame(Genre, _, Properties, _), member(Property, Properties)), GenreList)", "Property");
+    private static final PreparedQuery ALL_FRAMES = new PreparedQuery("frame(Name, subclase_de(Parent), Properties, Description)");
+    
+    /** Id returned by ancestorIdOf for names not in the taxonomy, distinct from the virtual root */
+    private static final int UNKNOWN_GENRE = Integer.MIN_VALUE;
+    
+    // Replaced as a whole on every load, so builds still running for the old version cannot leak into the new one
+    private volatile KnowledgeBaseIndexes indexes = new KnowledgeBaseIndexes(0);
+    private final SearchResultCache searchResultCache = new SearchResultCache(256);
+    private final QueryBudget queryBudget = QueryBudget.fromSystemProperties();
+    private final SlowQueryLog slowQueryLog = SlowQueryLog.getDefault();
+    private final SingleFlight<SharedResult> requestCoalescer = new SingleFlight<>();
+    private final boolean coalescingEnabled = Boolean.parseBoolean(System.getProperty("zoologia.coalescing", "true"));
+    private final String knowledgeBaseModule;
+    
+    /**
+     * Creates a service over the default knowledge base, the facts and rules consulted into user
+     */
+    public MusicGenreService() {
+        this(KnowledgeBaseRegistry.DEFAULT_MODULE);
+    }
+    
+    /**
+     * Creates a service over the knowledge base held in a Prolog module. Every
+     * query runs as Module:Goal, so the shared rules read that module's frames.
+     * @param knowledgeBaseModule the module holding the frames of this knowledge base
+     */
+    public MusicGenreService(String knowledgeBaseModule) {
+        this.knowledgeBaseModule = knowledgeBaseModule;
+    }
+    
+    /**
+     * Gets the Prolog module this service reads its frames from
+     * @return the module name
+     */
+    public String getKnowledgeBaseModule() {
+        return knowledgeBaseModule;
+    }
+    
+    /**
+     * Gets the time and inference limits applied to each service call, with their metrics
+     * @return the query budget of this service
+     */
+    public QueryBudget getQueryBudget() {
+        return queryBudget;
+    }
+    
+    /**
+     * Gets the coalescer that lets identical concurrent calls share one execution, with its metrics
+     * @return the request coalescer of this service
+     */
+    public SingleFlight<?> getRequestCoalescer() {
+        return requestCoalescer;
+    }
+    
+    /**
+     * Tells whether the last call on this thread returned everything it should.
+     * A call that hit its time or inference limit returns what it found so far.
+     * @return COMPLETE, or the limit that cut the last call short
+     */
+    public QueryBudget.Status getLastCallStatus() {
+        return queryBudget.getLastStatus();
+    }
     
     /**
      * Loads a Prolog knowledge base file
@@ -20,14 +102,58 @@ public class MusicGenreService {
      * @return true if successful, false otherwise
      */
     public boolean loadKnowledgeBase(String fileName) {
-        String consultQuery = "consult('" + "prolog/" + fileName + "')";
+        return loadKnowledgeBaseFile("prolog/" + fileName);
+    }
+    
+    /**
+     * Loads a Prolog file from any location, such as a generated test knowledge base.
+     * The default knowledge base consults the file. A knowledge base in its own
+     * module only loads the frames and auxiliary facts of the file, replacing
+     * the previous ones; the rules are shared and loaded once into user.
+     * Either way the tabled ancestor and inheritance answers of the knowledge
+     * base are discarded, so they are computed again from the new frames.
+     * @param filePath the path of the file to load
+     * @return true if successful, false otherwise
+     */
+    public boolean loadKnowledgeBaseFile(String filePath) {
+        String normalizedPath = filePath.replace("\\", "/");
+        try {
+            boolean success;
+            if (knowledgeBaseModule.equals(KnowledgeBaseRegistry.DEFAULT_MODULE)) {
+                success = CONSULT.bind(PreparedQuery.atom(normalizedPath)).hasSolution();
+                System.out.println("consult('" + normalizedPath + "') " + (success ? "succeeded" : "failed"));
+                // Loading into a module drops that module's tables in Prolog; consult does not
+                INVALIDATE_TABLES.bind(PreparedQuery.atom(knowledgeBaseModule)).hasSolution();
+            } else {
+                success = LOAD_INTO_MODULE.bind(PreparedQuery.atom(normalizedPath),
+                    PreparedQuery.atom(knowledgeBaseModule)).hasSolution();
+                System.out.println("Load '" + normalizedPath + "' into " + knowledgeBaseModule + " "
+                    + (success ? "succeeded" : "failed"));
+            }
+            invalidateTaxonomyIndex();
+            return success;
+        } catch (Exception e) {
+            System.err.println("Error loading knowledge base: " + filePath);
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Removes the frames and auxiliary facts of a knowledge base held in its own module
+     * @return true if successful, false otherwise
+     */
+    public boolean unloadKnowledgeBase() {
+        if (knowledgeBaseModule.equals(KnowledgeBaseRegistry.DEFAULT_MODULE)) {
+            System.err.println("The default knowledge base cannot be unloaded");
+            return false;
+        }
         try {
-            currentQuery = new Query(consultQuery);
-            boolean success = currentQuery.hasSolution();
-            System.out.println(consultQuery + " " + (success ? "succeeded" : "failed"));
+            boolean success = UNLOAD_MODULE.bind(PreparedQuery.atom(knowledgeBaseModule)).hasSolution();
+            invalidateTaxonomyIndex();
             return success;
         } catch (Exception e) {
-            System.err.println("Error loading knowledge base: " + fileName);
+            System.err.println("Error unloading knowledge base: " + knowledgeBaseModule);
             e.printStackTrace();
             return false;
         }
@@ -38,28 +164,222 @@ public class MusicGenreService {
      * @return array of genre names
      */
     public String[] getAllMusicGenres() {
-        String query = "obtener_todos_los_generos(GenreList)";
-        return executeListQuery(query, "GenreList");
+        return runCall("getAllMusicGenres", () -> executeListQuery(ALL_GENRES, "GenreList"));
     }
     
     /**
-     * Gets all properties for a specific genre
+     * Gets all properties for a specific genre, including inherited ones
      * @param genreName the name of the genre
      * @return array of formatted properties
      */
     public String[] getGenreProperties(String genreName) {
-        String query = "propiedadesc(" + genreName + ", PropertyList)";
-        return executeListQuery(query, "PropertyList");
+        TaxonomyIndex index = getTaxonomyIndex();
+        int genreId = index.idOf(genreName);
+        if (genreId < 0) {
+            return new String[0];
+        }
+        
+        DisplayLabels labels = getDisplayLabels();
+        int[] propertyIds = index.inheritedPropertyIds(genreId);
+        String[] formattedProperties = new String[propertyIds.length];
+        for (int i = 0; i < propertyIds.length; i++) {
+            formattedProperties[i] = labels.propertyLabel(propertyIds[i]);
+        }
+        return formattedProperties;
+    }
+    
+    /**
+     * Gets the display text of a property, such as "Usa instrumento: bateria" for usa(bateria)
+     * @param propertyName the Prolog text of the property
+     * @return the precomputed label, or a generic format for unknown properties
+     */
+    public String getPropertyLabel(String propertyName) {
+        int propertyId = getTaxonomyIndex().propertyIdOf(propertyName);
+        if (propertyId >= 0) {
+            return getDisplayLabels().propertyLabel(propertyId);
+        }
+        return DisplayLabels.formatName(propertyName);
     }
     
     /**
-     * Gets the parent classes/genres for a specific genre
+     * Gets the display name of a genre, such as "Musica Electronica" for musica_electronica
      * @param genreName the name of the genre
-     * @return array of parent genre names
+     * @return the precomputed label, or a generic format for unknown names
+     */
+    public String getGenreLabel(String genreName) {
+        int genreId = getTaxonomyIndex().idOf(genreName);
+        if (genreId >= 0) {
+            return getDisplayLabels().genreLabel(genreId);
+        }
+        return DisplayLabels.formatName(genreName);
+    }
+    
+    /**
+     * Gets the parent classes/genres for a specific genre, answered from the
+     * taxonomy index so a subclase_de cycle cannot make the walk loop
+     * @param genreName the name of the genre
+     * @return array of genre names from the top level down to the genre itself, empty if the genre is unknown
      */
     public String[] getGenreHierarchy(String genreName) {
-        String query = "jerarquia_clase(" + genreName + ", HierarchyList)";
-        return executeListQuery(query, "HierarchyList");
+        TaxonomyIndex index = getTaxonomyIndex();
+        int genreId = index.idOf(genreName.trim());
+        if (genreId < 0) {
+            return new String[0];
+        }
+        int[] path = index.pathFromRoot(genreId);
+        String[] hierarchy = new String[path.length];
+        for (int i = 0; i < path.length; i++) {
+            hierarchy[i] = index.nameOf(path[i]);
+        }
+        return hierarchy;
+    }
+    
+    /**
+     * Gets the in-memory index of the genre hierarchy, building it on first use
+     * @return the taxonomy index for the currently loaded knowledge base
+     */
+    public TaxonomyIndex getTaxonomyIndex() {
+        return taxonomyIndexOf(indexes);
+    }
+    
+    private TaxonomyIndex taxonomyIndexOf(KnowledgeBaseIndexes current) {
+        return current.taxonomyIndex.get(this::buildTaxonomyIndex);
+    }
+    
+    /**
+     * Finds the genres that sound most like a given genre, by weighted Jaccard
+     * similarity of their inherited property sets
+     * @param genreName the name of the genre
+     * @param limit the maximum number of results
+     * @param exact true to compare against every genre, false to use the MinHash candidates
+     * @return genre name to similarity between 0 and 1, most similar first
+     */
+    public Map<String, Double> findSimilarGenres(String genreName, int limit, boolean exact) {
+        Map<String, Double> similarGenres = new LinkedHashMap<>();
+        TaxonomyIndex index = getTaxonomyIndex();
+        int genreId = index.idOf(genreName);
+        if (genreId < 0) {
+            System.out.println("Unknown genre for similarity search: " + genreName);
+            return similarGenres;
+        }
+        
+        GenreSimilarityIndex similarity = getSimilarityIndex();
+        for (int similarId : similarity.findSimilar(genreId, limit, exact)) {
+            similarGenres.put(index.nameOf(similarId), similarity.similarity(genreId, similarId));
+        }
+        return similarGenres;
+    }
+    
+    /**
+     * Finds the genres whose descriptions best match some words, such as
+     * "afroamericano improvisacion". Case and accents are ignored, and genres
+     * are ranked by BM25 over the description words.
+     * @param queryText the words to search for
+     * @param limit the maximum number of results
+     * @return genre name to BM25 score, best match first
+     */
+    public Map<String, Double> findGenresByDescription(String queryText, int limit) {
+        return runCall("findGenresByDescription", () -> {
+            Map<String, Double> matchingGenres = new LinkedHashMap<>();
+            TaxonomyIndex index = getTaxonomyIndex();
+            for (DescriptionSearchIndex.Match match : getDescriptionIndex().search(queryText, limit)) {
+                matchingGenres.put(index.nameOf(match.getGenreId()), match.getScore());
+            }
+            return matchingGenres;
+        }, queryText, String.valueOf(limit));
+    }
+    
+    /**
+     * Gets the distinct property functors used in the knowledge base, such as usa or origen_pais
+     * @return the sorted functor names
+     */
+    public String[] getPropertyFunctors() {
+        TaxonomyIndex index = getTaxonomyIndex();
+        TreeSet<String> functors = new TreeSet<>();
+        for (int propertyId = 0; propertyId < index.propertyCount(); propertyId++) {
+            functors.add(index.propertyFunctorOf(propertyId));
+        }
+        return functors.toArray(new String[0]);
+    }
+    
+    /**
+     * Counts genres grouped by the value of a property functor,
+     * for example how many genres use each instrument for the functor usa
+     * @param functor the property functor to group by
+     * @param includeInherited whether inherited properties count, as in hereda_propiedad/2
+     * @param subtreeRoot only count this genre and its descendants, or null for the whole KB
+     * @return property value to genre count, ordered by descending count
+     */
+    public Map<String, Integer> countGenresByProperty(String functor, boolean includeInherited, String subtreeRoot) {
+        TaxonomyIndex index = getTaxonomyIndex();
+        Map<String, Integer> groupCounts = new LinkedHashMap<>();
+        
+        boolean[] functorMatches = new boolean[index.propertyCount()];
+        for (int propertyId = 0; propertyId < functorMatches.length; propertyId++) {
+            functorMatches[propertyId] = index.propertyFunctorOf(propertyId).equals(functor);
+        }
+        
+        int[] scope;
+        if (subtreeRoot == null || subtreeRoot.isEmpty()) {
+            scope = new int[index.size()];
+            Arrays.setAll(scope, genreId -> genreId);
+        } else {
+            int rootId = index.idOf(subtreeRoot);
+            if (rootId < 0) {
+                System.out.println("Unknown subtree root: " + subtreeRoot);
+                return groupCounts;
+            }
+            scope = index.subtreeIds(rootId);
+        }
+        
+        // Single pass over the genres in scope with one counter per property id
+        int[] counts = new int[index.propertyCount()];
+        for (int genreId : scope) {
+            if (includeInherited) {
+                for (int propertyId : index.inheritedPropertyIds(genreId)) {
+                    if (functorMatches[propertyId]) counts[propertyId]++;
+                }
+            } else {
+                for (int i = 0; i < index.directPropertyCount(genreId); i++) {
+                    int propertyId = index.directPropertyAt(genreId, i);
+                    if (functorMatches[propertyId]) counts[propertyId]++;
+                }
+            }
+        }
+        
+        Integer[] countedProperties = new Integer[counts.length];
+        int countedSize = 0;
+        for (int propertyId = 0; propertyId < counts.length; propertyId++) {
+            if (counts[propertyId] > 0) {
+                countedProperties[countedSize++] = propertyId;
+            }
+        }
+        Arrays.sort(countedProperties, 0, countedSize, (a, b) -> counts[b] - counts[a]);
+        
+        for (int i = 0; i < countedSize; i++) {
+            groupCounts.put(index.propertyValueOf(countedProperties[i]), counts[countedProperties[i]]);
+        }
+        return groupCounts;
+    }
+    
+    /**
+     * Exports genres, edges and direct and inherited properties for analytics
+     * @param outputDirectory the directory that receives the exported files
+     * @param format the export format
+     * @return true if successful, false otherwise
+     */
+    public boolean exportTaxonomy(Path outputDirectory, TaxonomyExporter.ExportFormat format) {
+        try {
+            long startTime = System.nanoTime();
+            new TaxonomyExporter(getTaxonomyIndex()).export(outputDirectory, format);
+            System.out.println("Taxonomy exported as " + format + " to " + outputDirectory
+                    + " in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error exporting taxonomy to: " + outputDirectory);
+            e.printStackTrace();
+            return false;
+        }
     }
     
     /**
@@ -67,8 +387,7 @@ public class MusicGenreService {
      * @return array of all property names
      */
     public String[] getAllAvailableProperties() {
-        String query = "todas_propiedades(PropertyList)";
-        return executeListQuery(query, "PropertyList");
+        return runCall("getAllAvailableProperties", () -> executeListQuery(ALL_PROPERTIES, "PropertyList"));
     }
     
     /**
@@ -77,23 +396,73 @@ public class MusicGenreService {
      * @return array of genre names that have this property
      */
     public String[] findGenresWithProperty(String propertyName) {
+        String[] propertySet = {propertyName.trim()};
+        long version = getKnowledgeBaseVersion();
+        String[] cachedResults = searchResultCache.get(propertySet, "todas", version);
+        if (cachedResults != null) {
+            return cachedResults.clone();
+        }
+        
+        return runCall("findGenresWithProperty", () -> {
+            TaxonomyIndex index = getTaxonomyIndex();
+            String[] results = genreNamesOf(index, genresWithProperty(index, propertyName));
+            if (queryBudget.currentStatus() == QueryBudget.Status.COMPLETE) {
+                searchResultCache.put(propertySet, "todas", version, results);
+            }
+            return results.clone();
+        }, propertyName);
+    }
+    
+    /**
+     * Gets the genres that write a property, from its compressed posting list
+     * when the property is in the index and from the Prolog searches otherwise
+     * @param index the taxonomy index the genre ids refer to
+     * @param propertyName the property to search for
+     * @return the ids of the genres that have this property
+     */
+    private GenreBitmap genresWithProperty(TaxonomyIndex index, String propertyName) {
+        int propertyId = index.propertyIdOf(propertyName.trim());
+        if (propertyId >= 0) {
+            slowQueryLog.notePath("posting_list");
+            return getPropertyPostings()[propertyId];
+        }
+        
+        String[] genreNames = searchGenresWithProperty(propertyName);
+        int[] genreIds = new int[genreNames.length];
+        int idCount = 0;
+        for (String genreName : genreNames) {
+            int genreId = index.idOf(genreName);
+            if (genreId >= 0) {
+                genreIds[idCount++] = genreId;
+            }
+        }
+        return GenreBitmap.of(Arrays.copyOf(genreIds, idCount));
+    }
+    
+    /**
+     * Runs the Prolog searches for a single property, trying each fallback in turn
+     * @param propertyName the property to search for
+     * @return array of genre names that have this property
+     */
+    private String[] searchGenresWithProperty(String propertyName) {
         System.out.println("=== SEARCHING GENRES WITH PROPERTY ===");
         System.out.println("Property: " + propertyName);
         
         // Try standard query first
-        String query = "tiene_propiedad(" + propertyName + ", GenreList)";
-        String[] results = executeListQuery(query, "GenreList");
+        slowQueryLog.notePath("tiene_propiedad");
+        String[] results = executeListQuery(GENRES_WITH_PROPERTY, "GenreList", PreparedQuery.property(propertyName));
         
         // If no results, try formatted property search
         if (results.length == 0) {
             System.out.println("Standard search returned empty, trying formatted search...");
-            query = "buscar_propiedad_formateada('" + propertyName + "', GenreList)";
-            results = executeListQuery(query, "GenreList");
+            slowQueryLog.notePath("buscar_propiedad_formateada");
+            results = executeListQuery(GENRES_WITH_FORMATTED_PROPERTY, "GenreList", PreparedQuery.atom(propertyName.trim()));
         }
         
         // If still no results, try manual search
         if (results.length == 0) {
             System.out.println("Formatted search returned empty, trying manual search...");
+            slowQueryLog.notePath("manual");
             results = performManualPropertySearch(propertyName);
         }
         
@@ -102,44 +471,88 @@ public class MusicGenreService {
     }
     
     /**
-     * Searches for genres that match multiple properties with specified criteria
+     * Searches for genres that match multiple properties with specified criteria.
+     * Results are cached by property set, and a selection that differs from a
+     * cached one by a single property is derived from the cached result.
      * @param selectedProperties array of properties to search for
      * @param searchCriteria either "todas" (all) or "alguna" (any)
      * @return array of matching genre names
      */
     public String[] findGenresWithMultipleProperties(String[] selectedProperties, String searchCriteria) {
+        String[] propertySet = SearchResultCache.canonicalize(selectedProperties);
+        String[] parameters = new String[propertySet.length + 1];
+        parameters[0] = searchCriteria;
+        System.arraycopy(propertySet, 0, parameters, 1, propertySet.length);
+        return runCall("findGenresWithMultipleProperties",
+            () -> searchMultipleProperties(selectedProperties, searchCriteria), parameters);
+    }
+    
+    /**
+     * Runs a multi-property search for findGenresWithMultipleProperties
+     * @param selectedProperties array of properties to search for
+     * @param searchCriteria either "todas" (all) or "alguna" (any)
+     * @return array of matching genre names
+     */
+    private String[] searchMultipleProperties(String[] selectedProperties, String searchCriteria) {
         System.out.println("=== MULTI-PROPERTY SEARCH ===");
         System.out.println("Properties count: " + selectedProperties.length);
         System.out.println("Search criteria: " + searchCriteria);
         
         try {
-            String[] allGenres = getAllMusicGenres();
-            if (allGenres == null || allGenres.length == 0) {
-                System.out.println("No genres found in database");
-                return new String[0];
+            String[] propertySet = SearchResultCache.canonicalize(selectedProperties);
+            boolean matchAll = searchCriteria.equals("todas");
+            long version = getKnowledgeBaseVersion();
+            
+            String[] cachedResults = searchResultCache.get(propertySet, searchCriteria, version);
+            if (cachedResults != null) {
+                System.out.println("Search served from cache. Found " + cachedResults.length + " matching genres");
+                return cachedResults.clone();
             }
             
-            List<String> matchingGenres = new ArrayList<>();
+            TaxonomyIndex index = getTaxonomyIndex();
+            GenreBitmap matchingIds = null;
             
-            for (String currentGenre : allGenres) {
-                int propertyMatches = 0;
+            // Derive from a cached selection with one property less
+            for (int i = 0; i < propertySet.length && matchingIds == null && propertySet.length > 1; i++) {
+                String[] smallerSet = new String[propertySet.length - 1];
+                System.arraycopy(propertySet, 0, smallerSet, 0, i);
+                System.arraycopy(propertySet, i + 1, smallerSet, i, propertySet.length - i - 1);
                 
-                for (String currentProperty : selectedProperties) {
-                    if (genreHasProperty(currentGenre, currentProperty)) {
-                        propertyMatches++;
+                String[] smallerResults = searchResultCache.get(smallerSet, searchCriteria, version);
+                if (smallerResults != null) {
+                    System.out.println("Deriving from cached result without: " + propertySet[i]);
+                    int[] smallerIds = new int[smallerResults.length];
+                    int idCount = 0;
+                    for (String genreName : smallerResults) {
+                        int genreId = index.idOf(genreName);
+                        if (genreId >= 0) {
+                            smallerIds[idCount++] = genreId;
+                        }
                     }
+                    GenreBitmap smallerGenres = GenreBitmap.of(Arrays.copyOf(smallerIds, idCount));
+                    GenreBitmap addedGenres = genresWithProperty(index, propertySet[i]);
+                    matchingIds = matchAll ? smallerGenres.and(addedGenres) : smallerGenres.or(addedGenres);
                 }
-                
-                boolean shouldInclude = searchCriteria.equals("todas") ? 
-                    (propertyMatches == selectedProperties.length) : (propertyMatches > 0);
-                
-                if (shouldInclude) {
-                    matchingGenres.add(currentGenre);
+            }
+            
+            // Otherwise combine the posting list of each property
+            if (matchingIds == null) {
+                matchingIds = matchAll ? GenreBitmap.range(0, index.size()) : GenreBitmap.EMPTY;
+                for (String property : propertySet) {
+                    GenreBitmap propertyGenres = genresWithProperty(index, property);
+                    matchingIds = matchAll ? matchingIds.and(propertyGenres) : matchingIds.or(propertyGenres);
+                    if (matchAll && matchingIds.isEmpty()) {
+                        break;
+                    }
                 }
             }
             
-            System.out.println("Search completed. Found " + matchingGenres.size() + " matching genres");
-            return matchingGenres.toArray(new String[0]);
+            String[] matchingGenres = genreNamesOf(index, matchingIds);
+            if (queryBudget.currentStatus() == QueryBudget.Status.COMPLETE) {
+                searchResultCache.put(propertySet, searchCriteria, version, matchingGenres);
+            }
+            System.out.println("Search completed. Found " + matchingGenres.length + " matching genres");
+            return matchingGenres.clone();
             
         } catch (Exception e) {
             System.err.println("Error in multi-property search: " + e.getMessage());
@@ -148,71 +561,469 @@ public class MusicGenreService {
         }
     }
     
+    /**
+     * Counts, for every property not yet selected, how many genres a
+     * multi-property search would return once that property is added. The
+     * result set of the current selection is built once and intersected with
+     * the posting list of each property, so no search runs per property.
+     * @param selectedProperties the properties already selected, possibly none
+     * @param searchCriteria either "todas" (all) or "alguna" (any)
+     * @return property name to the result count with that property added, for every indexed property not selected
+     */
+    public Map<String, Integer> getPropertyFacetCounts(String[] selectedProperties, String searchCriteria) {
+        String[] propertySet = SearchResultCache.canonicalize(selectedProperties);
+        String[] parameters = new String[propertySet.length + 1];
+        parameters[0] = searchCriteria;
+        System.arraycopy(propertySet, 0, parameters, 1, propertySet.length);
+        return runCall("getPropertyFacetCounts", () -> {
+            Map<String, Integer> facetCounts = new LinkedHashMap<>();
+            TaxonomyIndex index = getTaxonomyIndex();
+            boolean matchAll = searchCriteria.equals("todas");
+            
+            GenreBitmap matchingIds = matchAll ? GenreBitmap.range(0, index.size()) : GenreBitmap.EMPTY;
+            boolean[] selected = new boolean[index.propertyCount()];
+            for (String property : propertySet) {
+                GenreBitmap propertyGenres = genresWithProperty(index, property);
+                matchingIds = matchAll ? matchingIds.and(propertyGenres) : matchingIds.or(propertyGenres);
+                int propertyId = index.propertyIdOf(property);
+                if (propertyId >= 0) {
+                    selected[propertyId] = true;
+                }
+            }
+            
+            // Adding a property keeps the shared genres under "todas" and adds the others under "alguna"
+            int matchingCount = matchingIds.cardinality();
+            GenreBitmap[] postings = getPropertyPostings();
+            for (int propertyId = 0; propertyId < postings.length; propertyId++) {
+                if (selected[propertyId]) {
+                    continue;
+                }
+                int sharedCount = matchingIds.andCardinality(postings[propertyId]);
+                facetCounts.put(index.propertyNameOf(propertyId), matchAll ? sharedCount
+                    : matchingCount + postings[propertyId].cardinality() - sharedCount);
+            }
+            return facetCounts;
+        }, parameters);
+    }
+    
+    /**
+     * Counts how many of the given properties each genre writes, as the
+     * multi-property search matches them
+     * @param genreNames the genres, such as the results of a search
+     * @param properties the searched properties
+     * @return the number of properties of each genre, in the order of genreNames
+     */
+    public int[] countPropertyMatches(String[] genreNames, String[] properties) {
+        TaxonomyIndex index = getTaxonomyIndex();
+        GenreBitmap[] propertyGenres = new GenreBitmap[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            propertyGenres[i] = genresWithProperty(index, properties[i]);
+        }
+        int[] matchCounts = new int[genreNames.length];
+        for (int i = 0; i < genreNames.length; i++) {
+            int genreId = index.idOf(genreNames[i]);
+            for (GenreBitmap genres : propertyGenres) {
+                if (genres.contains(genreId)) {
+                    matchCounts[i]++;
+                }
+            }
+        }
+        return matchCounts;
+    }
+    
+    /**
+     * Finds the genres that satisfy a boolean property expression such as
+     * "usa(sintetizador) Y energia(alta) Y NO origen_pais(usa)". A genre has a
+     * property when it or one of its ancestors writes it, as in hereda_propiedad/2.
+     * @param expressionText the expression, with AND/Y, OR/O, NOT/NO, commas and parentheses
+     * @return array of matching genre names
+     * @throws IllegalArgumentException if the expression cannot be parsed
+     */
+    public String[] findGenresMatchingExpression(String expressionText) {
+        return findGenresMatchingExpression(expressionText, null);
+    }
+    
+    /**
+     * Finds the genres below a given genre that satisfy a boolean property expression
+     * @param expressionText the expression, with AND/Y, OR/O, NOT/NO, commas and parentheses
+     * @param subtreeRoot the genre whose subgenres are searched, or null for the whole taxonomy
+     * @return array of matching genre names
+     * @throws IllegalArgumentException if the expression cannot be parsed
+     */
+    public String[] findGenresMatchingExpression(String expressionText, String subtreeRoot) {
+        PropertyExpression expression = PropertyExpression.parse(expressionText);
+        return runCall("findGenresMatchingExpression", () -> searchExpression(expression, subtreeRoot),
+            expression.toString(), subtreeRoot != null ? subtreeRoot : "");
+    }
+    
+    /**
+     * Evaluates a parsed expression for findGenresMatchingExpression
+     * @param expression the parsed expression
+     * @param subtreeRoot the genre whose subgenres are searched, or null for the whole taxonomy
+     * @return array of matching genre names
+     */
+    private String[] searchExpression(PropertyExpression expression, String subtreeRoot) {
+        System.out.println("=== EXPRESSION SEARCH ===");
+        System.out.println("Expression: " + expression);
+        System.out.println("Subtree: " + (subtreeRoot != null ? subtreeRoot : "(all)"));
+        
+        try {
+            String[] expressionKey = {expression.toString(), "@" + (subtreeRoot != null ? subtreeRoot : "")};
+            long version = getKnowledgeBaseVersion();
+            String[] cachedResults = searchResultCache.get(expressionKey, "expresion", version);
+            if (cachedResults != null) {
+                System.out.println("Search served from cache. Found " + cachedResults.length + " matching genres");
+                return cachedResults.clone();
+            }
+            
+            // Sets hold preorder positions, so the scope is a single range
+            TaxonomyIndex index = getTaxonomyIndex();
+            GenreBitmap scope = GenreBitmap.range(0, index.size());
+            if (subtreeRoot != null) {
+                int rootId = index.idOf(subtreeRoot);
+                if (rootId < 0) {
+                    System.out.println("Unknown subtree root: " + subtreeRoot);
+                    return new String[0];
+                }
+                scope = GenreBitmap.range(index.preorderOf(rootId) + 1, index.subtreeEndOf(rootId));
+            }
+            
+            GenreBitmap matchingPositions = expression.evaluate(property -> {
+                int propertyId = index.propertyIdOf(property.trim());
+                if (propertyId < 0) {
+                    System.out.println("Property not written in any frame: " + property);
+                    return GenreBitmap.EMPTY;
+                }
+                return getInheritedPosting(propertyId);
+            }, scope).and(scope);
+            
+            int[] positions = matchingPositions.toArray();
+            int[] genreIds = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                genreIds[i] = index.genreAtPreorder(positions[i]);
+            }
+            String[] matchingGenres = genreNamesOf(index, GenreBitmap.of(genreIds));
+            if (queryBudget.currentStatus() == QueryBudget.Status.COMPLETE) {
+                searchResultCache.put(expressionKey, "expresion", version, matchingGenres);
+            }
+            System.out.println("Search completed. Found " + matchingGenres.length + " matching genres");
+            return matchingGenres.clone();
+            
+        } catch (Exception e) {
+            System.err.println("Error in expression search: " + e.getMessage());
+            e.printStackTrace();
+            return new String[0];
+        }
+    }
+    
+    /**
+     * Checks whether a genre is a direct or indirect subgenre of another, like es_subclase_de/2
+     * @param genreName the name of the possible subgenre
+     * @param ancestorName the name of the possible ancestor
+     * @return true if the genre is below the ancestor in the taxonomy
+     */
+    public boolean isSubgenreOf(String genreName, String ancestorName) {
+        TaxonomyIndex index = getTaxonomyIndex();
+        int genreId = index.idOf(genreName);
+        int ancestorId = index.idOf(ancestorName);
+        return genreId >= 0 && ancestorId >= 0 && index.isDescendantOf(genreId, ancestorId);
+    }
+    
+    /**
+     * Gets every direct and indirect subgenre of a genre, like subgeneros_de/2
+     * @param genreName the name of the genre
+     * @return the sorted subgenre names
+     */
+    public String[] getSubgenres(String genreName) {
+        TaxonomyIndex index = getTaxonomyIndex();
+        int genreId = index.idOf(genreName);
+        if (genreId < 0) {
+            return new String[0];
+        }
+        int[] subtree = index.subtreeIds(genreId);
+        return genreNamesOf(index, GenreBitmap.of(Arrays.copyOfRange(subtree, 1, subtree.length)));
+    }
+    
+    /**
+     * Gets how deep a genre sits in the taxonomy
+     * @param genreName the name of the genre
+     * @return 1 for top-level genres such as musica, 2 for their subgenres and so on; -1 if unknown
+     */
+    public int getGenreDepth(String genreName) {
+        int genreId = ancestorIdOf(getTaxonomyIndex(), genreName);
+        return genreId == UNKNOWN_GENRE ? -1 : getAncestorTable().depthOf(genreId);
+    }
+    
+    /**
+     * Finds the most specific genre two genres descend from, such as
+     * musica_electronica for techno and dubstep
+     * @param firstGenre the name of the first genre
+     * @param secondGenre the name of the second genre
+     * @return the common ancestor, the genre itself if one contains the other,
+     *         "top" if they only meet at the root, or null if a genre is unknown
+     */
+    public String findCommonAncestor(String firstGenre, String secondGenre) {
+        return findCommonAncestors(new String[]{firstGenre}, new String[]{secondGenre})[0];
+    }
+    
+    /**
+     * Gets the number of parent-child steps between two genres, such as 1 for jazz and bebop
+     * @param firstGenre the name of the first genre
+     * @param secondGenre the name of the second genre
+     * @return the tree distance, or -1 if a genre is unknown
+     */
+    public int getGenreDistance(String firstGenre, String secondGenre) {
+        return getGenreDistances(new String[]{firstGenre}, new String[]{secondGenre})[0];
+    }
+    
+    /**
+     * Finds the common ancestor of many genre pairs, resolving the table once
+     * @param firstGenres the first genre of each pair
+     * @param secondGenres the second genre of each pair, same length as firstGenres
+     * @return the common ancestor of each pair, null where a genre is unknown
+     */
+    public String[] findCommonAncestors(String[] firstGenres, String[] secondGenres) {
+        TaxonomyIndex index = getTaxonomyIndex();
+        int[][] pairIds = resolvePairs(index, firstGenres, secondGenres);
+        int[] ancestorIds = getAncestorTable().lowestCommonAncestors(pairIds[0], pairIds[1]);
+        
+        String[] ancestors = new String[firstGenres.length];
+        for (int i = 0, pair = 0; i < ancestors.length; i++) {
+            if (pairIds[2][i] != 0) {
+                int ancestorId = ancestorIds[pair++];
+                ancestors[i] = ancestorId == AncestorTable.VIRTUAL_ROOT ? TaxonomyIndex.ROOT_NAME : index.nameOf(ancestorId);
+            }
+        }
+        return ancestors;
+    }
+    
+    /**
+     * Gets the tree distance of many genre pairs, resolving the table once
+     * @param firstGenres the first genre of each pair
+     * @param secondGenres the second genre of each pair, same length as firstGenres
+     * @return the distance of each pair, -1 where a genre is unknown
+     */
+    public int[] getGenreDistances(String[] firstGenres, String[] secondGenres) {
+        int[][] pairIds = resolvePairs(getTaxonomyIndex(), firstGenres, secondGenres);
+        int[] pairDistances = getAncestorTable().distances(pairIds[0], pairIds[1]);
+        
+        int[] distances = new int[firstGenres.length];
+        for (int i = 0, pair = 0; i < distances.length; i++) {
+            distances[i] = pairIds[2][i] != 0 ? pairDistances[pair++] : -1;
+        }
+        return distances;
+    }
+    
+    /**
+     * Maps genre name pairs to ids, leaving out pairs with an unknown genre
+     * @return the first ids and second ids of the known pairs, and a 0/1 flag per input pair
+     */
+    private int[][] resolvePairs(TaxonomyIndex index, String[] firstGenres, String[] secondGenres) {
+        if (firstGenres.length != secondGenres.length) {
+            throw new IllegalArgumentException("Expected as many second genres as first genres but found "
+                + secondGenres.length + " and " + firstGenres.length);
+        }
+        int[] firstIds = new int[firstGenres.length];
+        int[] secondIds = new int[firstGenres.length];
+        int[] known = new int[firstGenres.length];
+        int pairCount = 0;
+        for (int i = 0; i < firstGenres.length; i++) {
+            int firstId = ancestorIdOf(index, firstGenres[i]);
+            int secondId = ancestorIdOf(index, secondGenres[i]);
+            if (firstId != UNKNOWN_GENRE && secondId != UNKNOWN_GENRE) {
+                firstIds[pairCount] = firstId;
+                secondIds[pairCount++] = secondId;
+                known[i] = 1;
+            }
+        }
+        return new int[][]{Arrays.copyOf(firstIds, pairCount), Arrays.copyOf(secondIds, pairCount), known};
+    }
+    
+    /**
+     * Maps a genre name to its id in the ancestor table, where "top" is the virtual root
+     */
+    private int ancestorIdOf(TaxonomyIndex index, String genreName) {
+        if (genreName == null) {
+            return UNKNOWN_GENRE;
+        }
+        if (genreName.trim().equals(TaxonomyIndex.ROOT_NAME)) {
+            return AncestorTable.VIRTUAL_ROOT;
+        }
+        int genreId = index.idOf(genreName.trim());
+        return genreId >= 0 ? genreId : UNKNOWN_GENRE;
+    }
+    
     /**
      * Gets the description for a specific genre
      * @param genreName the name of the genre
      * @return the description text
      */
     public String getGenreDescription(String genreName) {
-        try {
-            String query = "obtiene_descripcion(" + genreName + ", Description)";
-            currentQuery = new Query(query);
-            if (currentQuery.hasSolution()) {
-                Map<String, Term> solutions = currentQuery.nextSolution();
-                String description = solutions.get("Description").toString();
-                
-                // Clean up formatting
-                if (description.startsWith("'") && description.endsWith("'")) {
-                    description = description.substring(1, description.length() - 1);
+        return runCall("getGenreDescription", () -> {
+            try {
+                Map<String, Term> solutions = solveWithinBudget(GENRE_DESCRIPTION, PreparedQuery.atom(genreName));
+                if (solutions != null) {
+                    String description = termToName(solutions.get("Description"));
+                    
+                    // Clean up formatting
+                    description = description.replace("_", " ");
+                    return description;
                 }
-                
-                description = description.replace("_", " ");
-                return description;
+            } catch (Exception e) {
+                System.err.println("Error getting description for: " + genreName);
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            System.err.println("Error getting description for: " + genreName);
-            e.printStackTrace();
+            return "";
+        }, genreName);
+    }
+    
+    /**
+     * Runs a public service call. Concurrent calls with the same operation and
+     * normalized parameters share one execution, unless -Dzoologia.coalescing=false;
+     * every caller gets its own copy of the result and the status of the shared run.
+     * @param operation the service method name, as SlowQueryReplay calls it
+     * @param call the work of the call
+     * @param parameters the normalized call parameters, the coalescing key and what replay needs
+     * @param <T> the result type
+     * @return the result of the call
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T runCall(String operation, Supplier<T> call, String... parameters) {
+        if (!coalescingEnabled) {
+            return runBudgetedCall(operation, call, parameters);
+        }
+        
+        String key = operation + "\u0000" + String.join("\u0000", parameters);
+        boolean[] ranOnThisThread = {false};
+        SharedResult shared = requestCoalescer.execute(operation, key, () -> {
+            ranOnThisThread[0] = true;
+            T result = runBudgetedCall(operation, call, parameters);
+            return new SharedResult(result, queryBudget.getLastStatus());
+        });
+        if (!ranOnThisThread[0]) {
+            // Joined another caller's run: count it as a call that ended like that run
+            queryBudget.begin();
+            queryBudget.degrade(shared.status);
+            queryBudget.end();
+        }
+        
+        // An operation always returns the same type, and the key starts with the operation
+        Object result = shared.result;
+        if (result instanceof String[]) {
+            return (T) ((String[]) result).clone();
+        }
+        if (result instanceof Map) {
+            return (T) new LinkedHashMap<>((Map<?, ?>) result);
+        }
+        return (T) result;
+    }
+    
+    /**
+     * Runs a call under the query budget and times it for the slow-query log
+     * @param operation the service method name
+     * @param call the work of the call
+     * @param parameters the call parameters, recorded so the call can be replayed
+     * @param <T> the result type
+     * @return the result of the call
+     */
+    private <T> T runBudgetedCall(String operation, Supplier<T> call, String... parameters) {
+        queryBudget.begin();
+        slowQueryLog.begin(operation, parameters);
+        T result = null;
+        try {
+            result = call.get();
+            return result;
+        } finally {
+            QueryBudget.Status status = queryBudget.end();
+            int resultCount = result instanceof String[] ? ((String[]) result).length
+                : result instanceof Map ? ((Map<?, ?>) result).size()
+                : result instanceof String ? (((String) result).isEmpty() ? 0 : 1) : -1;
+            slowQueryLog.end(resultCount, status, FrameStorage.fromSystemProperty().getName(), knowledgeBaseModule);
+        }
+    }
+    
+    /**
+     * Runs a prepared query within the time and inference limits of the current call.
+     * A goal that hits a limit counts as having no solution and degrades the call status.
+     * @param preparedQuery the goal template to execute
+     * @param arguments the terms bound to the template parameters
+     * @return the bindings of the first solution, or null if there is none
+     * @throws Exception if the query fails for a reason other than a limit
+     */
+    private Map<String, Term> solveWithinBudget(PreparedQuery preparedQuery, Term... arguments) throws Exception {
+        if (queryBudget.isExpired()) {
+            System.out.println("Time limit already reached, skipping: " + preparedQuery.getTemplateText());
+            queryBudget.degrade(QueryBudget.Status.TIMED_OUT);
+            slowQueryLog.noteGoal(preparedQuery.getTemplateText(), arguments, 0, "skipped");
+            return null;
+        }
+        
+        long startTime = System.nanoTime();
+        String outcome = "error";
+        try {
+            Query query = new Query(queryBudget.limit(preparedQuery.goalIn(knowledgeBaseModule, arguments)));
+            if (!query.hasSolution()) {
+                outcome = "no_solution";
+                return null;
+            }
+            Map<String, Term> solution = query.nextSolution();
+            Term limitResult = solution.get(QueryBudget.LIMIT_RESULT_VARIABLE);
+            if (limitResult != null && "inference_limit_exceeded".equals(limitResult.name())) {
+                System.out.println("Inference limit reached: " + preparedQuery.getTemplateText());
+                queryBudget.degrade(QueryBudget.Status.INFERENCE_LIMIT_EXCEEDED);
+                outcome = "inference_limit";
+                return null;
+            }
+            outcome = "solution";
+            return solution;
+        } catch (PrologException e) {
+            if (String.valueOf(e.term()).contains("time_limit_exceeded")) {
+                System.out.println("Time limit reached: " + preparedQuery.getTemplateText());
+                queryBudget.degrade(QueryBudget.Status.TIMED_OUT);
+                outcome = "time_limit";
+                return null;
+            }
+            throw e;
+        } finally {
+            slowQueryLog.noteGoal(preparedQuery.getTemplateText(), arguments, System.nanoTime() - startTime, outcome);
         }
-        return "";
     }
     
     /**
-     * Executes a Prolog query that returns a list and parses the results
-     * @param queryString the Prolog query to execute
+     * Executes a prepared Prolog query that returns a list and converts the elements
+     * @param preparedQuery the goal template to execute
      * @param variableName the variable name to extract from the result
+     * @param arguments the terms bound to the template parameters
      * @return array of string results
      */
-    private String[] executeListQuery(String queryString, String variableName) {
+    private String[] executeListQuery(PreparedQuery preparedQuery, String variableName, Term... arguments) {
         System.out.println("=== EXECUTING PROLOG QUERY ===");
-        System.out.println("Query: " + queryString);
+        System.out.println("Query: " + preparedQuery.getTemplateText() + " with " + Arrays.toString(arguments));
         System.out.println("Variable: " + variableName);
         
         try {
-            currentQuery = new Query(queryString);
-            System.out.println("Query created successfully");
+            Map<String, Term> solutions = solveWithinBudget(preparedQuery, arguments);
             
-            if (currentQuery.hasSolution()) {
+            if (solutions != null) {
                 System.out.println("Query has solution");
-                Map<String, Term> solutions = currentQuery.nextSolution();
-                String responseString = solutions.get(variableName).toString();
-                System.out.println("Raw response: " + responseString);
-                
-                return parseListResponse(responseString);
+                String[] results = listToNames(solutions.get(variableName));
+                slowQueryLog.noteSolutionCount(results.length);
+                return results;
             } else {
                 System.out.println("Query has no solution");
                 return new String[0];
             }
         } catch (Exception e) {
             System.err.println("=== ERROR IN PROLOG QUERY ===");
-            System.err.println("Query: " + queryString);
+            System.err.println("Query: " + preparedQuery.getTemplateText());
             System.err.println("Error type: " + e.getClass().getSimpleName());
             System.err.println("Error message: " + e.getMessage());
             e.printStackTrace();
             
             // Try alternative approach for property queries
-            if (queryString.contains("tiene_propiedad")) {
+            if (preparedQuery == GENRES_WITH_PROPERTY) {
                 System.out.println("Attempting alternative property search...");
-                return performAlternativePropertySearch(queryString);
+                return performAlternativePropertySearch(arguments[0]);
             }
             
             return new String[0];
@@ -220,63 +1031,310 @@ public class MusicGenreService {
     }
     
     /**
-     * Parses a Prolog list response string into a Java string array
-     * @param responseString the raw response from Prolog
-     * @return parsed array of strings
+     * Gets the problems found in the frames of the knowledge base: duplicated
+     * frames, undefined parents and subclase_de cycles
+     * @return one message per problem, empty if the knowledge base is consistent
      */
-    private String[] parseListResponse(String responseString) {
-        if (responseString.contains("[") && responseString.contains("]")) {
-            String listContent = responseString.substring(
-                responseString.indexOf("[") + 1, 
-                responseString.lastIndexOf("]")
-            );
-            System.out.println("Extracted content: " + listContent);
-            
-            if (listContent.trim().isEmpty()) {
-                System.out.println("Empty content - returning empty array");
-                return new String[0];
+    public String[] getKnowledgeBaseErrors() {
+        return getTaxonomyIndex().validationErrors().toArray(new String[0]);
+    }
+    
+    /**
+     * Reads every frame from the knowledge base into a TaxonomyIndex.
+     * Solutions are consumed one at a time instead of collected into one large list term.
+     * @return the index, empty if the frames could not be read
+     */
+    private TaxonomyIndex buildTaxonomyIndex() {
+        List<TaxonomyIndex.Frame> frames = new ArrayList<>();
+        
+        try {
+            Query frameQuery = ALL_FRAMES.bindIn(knowledgeBaseModule);
+            while (frameQuery.hasMoreSolutions()) {
+                Map<String, Term> solution = frameQuery.nextSolution();
+                Term[] propertyTerms = solution.get("Properties").listToTermArray();
+                String[] properties = new String[propertyTerms.length];
+                for (int i = 0; i < propertyTerms.length; i++) {
+                    properties[i] = propertyTerms[i].toString();
+                }
+                frames.add(new TaxonomyIndex.Frame(
+                    termToName(solution.get("Name")),
+                    termToName(solution.get("Parent")),
+                    properties,
+                    termToName(solution.get("Description"))
+                ));
             }
+        } catch (Exception e) {
+            System.err.println("Error building taxonomy index");
+            e.printStackTrace();
+        }
+        
+        System.out.println("Taxonomy index built with " + frames.size() + " frames");
+        TaxonomyIndex index = new TaxonomyIndex(frames);
+        for (String error : index.validationErrors()) {
+            System.err.println("Knowledge base error: " + error);
+        }
+        return index;
+    }
+    
+    /**
+     * Gets the MinHash similarity index, building it on first use
+     * @return the similarity index for the currently loaded knowledge base
+     */
+    private GenreSimilarityIndex getSimilarityIndex() {
+        KnowledgeBaseIndexes current = indexes;
+        return current.similarityIndex.get(() ->
+            new GenreSimilarityIndex(taxonomyIndexOf(current), knowledgeBaseStatisticsOf(current)));
+    }
+    
+    /**
+     * Gets the full-text index over the genre descriptions, building it on first use
+     * @return the description index for the currently loaded knowledge base
+     */
+    public DescriptionSearchIndex getDescriptionIndex() {
+        KnowledgeBaseIndexes current = indexes;
+        return current.descriptionIndex.get(() -> {
+            long startTime = System.nanoTime();
+            DescriptionSearchIndex descriptionIndex = new DescriptionSearchIndex(taxonomyIndexOf(current));
+            System.out.println("Description index built: " + descriptionIndex.termCount() + " terms in "
+                + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            return descriptionIndex;
+        });
+    }
+    
+    /**
+     * Gets the binary lifting table for depth, common ancestor and distance queries, building it on first use
+     * @return the ancestor table for the currently loaded knowledge base
+     */
+    public AncestorTable getAncestorTable() {
+        return ancestorTableOf(indexes);
+    }
+    
+    private AncestorTable ancestorTableOf(KnowledgeBaseIndexes current) {
+        return current.ancestorTable.get(() -> new AncestorTable(taxonomyIndexOf(current)));
+    }
+    
+    /**
+     * Gets the compressed posting list of every property, building them on first use
+     * @return the genres that write each property, indexed by property id
+     */
+    private GenreBitmap[] getPropertyPostings() {
+        return propertyPostingsOf(indexes);
+    }
+    
+    private GenreBitmap[] propertyPostingsOf(KnowledgeBaseIndexes current) {
+        return current.propertyPostings.get(() -> {
+            TaxonomyIndex index = taxonomyIndexOf(current);
+            GenreBitmap[] postings = new GenreBitmap[index.propertyCount()];
             
-            String[] items = listContent.split(",");
-            System.out.println("Split into " + items.length + " items");
-            
-            for (int i = 0; i < items.length; i++) {
-                items[i] = items[i].trim();
-                // Remove single quotes if present
-                if (items[i].startsWith("'") && items[i].endsWith("'")) {
-                    items[i] = items[i].substring(1, items[i].length() - 1);
+            // Invert the direct properties of each frame; walking genres in id order keeps every list sorted
+            int[] postingOffsets = new int[postings.length + 1];
+            for (int genreId = 0; genreId < index.size(); genreId++) {
+                for (int i = 0; i < index.directPropertyCount(genreId); i++) {
+                    postingOffsets[index.directPropertyAt(genreId, i) + 1]++;
+                }
+            }
+            for (int propertyId = 0; propertyId < postings.length; propertyId++) {
+                postingOffsets[propertyId + 1] += postingOffsets[propertyId];
+            }
+            int[] postingGenreIds = new int[postingOffsets[postings.length]];
+            int[] postingPositions = Arrays.copyOf(postingOffsets, postings.length);
+            for (int genreId = 0; genreId < index.size(); genreId++) {
+                for (int i = 0; i < index.directPropertyCount(genreId); i++) {
+                    postingGenreIds[postingPositions[index.directPropertyAt(genreId, i)]++] = genreId;
                 }
-                System.out.println("  Item " + i + ": '" + items[i] + "'");
             }
             
-            System.out.println("Successfully processed " + items.length + " items");
-            return items;
-        } else {
-            System.out.println("Response doesn't contain brackets - returning single item");
-            return new String[]{responseString};
+            long compressedBytes = 0;
+            long uncompressedBytes = 0;
+            for (int propertyId = 0; propertyId < postings.length; propertyId++) {
+                int[] genreIds = Arrays.copyOfRange(postingGenreIds,
+                    postingOffsets[propertyId], postingOffsets[propertyId + 1]);
+                postings[propertyId] = GenreBitmap.of(genreIds);
+                compressedBytes += postings[propertyId].sizeInBytes();
+                uncompressedBytes += (long) genreIds.length * Integer.BYTES;
+            }
+            System.out.println("Posting lists built for " + postings.length + " properties: "
+                    + compressedBytes + " bytes compressed, " + uncompressedBytes + " bytes as int arrays");
+            return postings;
+        });
+    }
+    
+    /**
+     * Gets the genres that have a property directly or by inheritance,
+     * computing the set the first time the property is asked for
+     * @param propertyId the id of the property
+     * @return the preorder positions of the subtrees of every frame that writes the property
+     */
+    private GenreBitmap getInheritedPosting(int propertyId) {
+        KnowledgeBaseIndexes current = indexes;
+        TaxonomyIndex index = taxonomyIndexOf(current);
+        GenreBitmap[] inheritedPostings = current.inheritedPostings.get(() -> new GenreBitmap[index.propertyCount()]);
+        // Each set is cheap to compute, so one lock over the whole array is enough
+        synchronized (inheritedPostings) {
+            if (inheritedPostings[propertyId] == null) {
+                int[] writerPositions = propertyPostingsOf(current)[propertyId].toArray();
+                for (int i = 0; i < writerPositions.length; i++) {
+                    writerPositions[i] = index.preorderOf(writerPositions[i]);
+                }
+                Arrays.sort(writerPositions);
+                
+                // Each writer contributes its subtree range; ranges nested in an earlier one add nothing
+                GenreBitmap genres = GenreBitmap.EMPTY;
+                int coveredEnd = 0;
+                for (int position : writerPositions) {
+                    int subtreeEnd = index.subtreeEndOf(index.genreAtPreorder(position));
+                    if (subtreeEnd > coveredEnd) {
+                        genres = genres.or(GenreBitmap.range(position, subtreeEnd));
+                        coveredEnd = subtreeEnd;
+                    }
+                }
+                inheritedPostings[propertyId] = genres;
+            }
+            return inheritedPostings[propertyId];
         }
     }
     
     /**
-     * Checks if a specific genre has a specific property
-     * @param genreName the name of the genre
-     * @param propertyName the property to check
-     * @return true if the genre has the property, false otherwise
+     * Gets the genre and property label table, building it on first use
+     * @return the labels for the currently loaded knowledge base
      */
-    private boolean genreHasProperty(String genreName, String propertyName) {
-        try {
-            String[] genresWithProperty = findGenresWithProperty(propertyName);
-            if (genresWithProperty != null) {
-                for (String genreWithProperty : genresWithProperty) {
-                    if (genreName.equals(genreWithProperty.trim())) {
-                        return true;
+    public DisplayLabels getDisplayLabels() {
+        KnowledgeBaseIndexes current = indexes;
+        return current.displayLabels.get(() -> new DisplayLabels(taxonomyIndexOf(current)));
+    }
+    
+    /**
+     * Gets the version of the loaded knowledge base, which changes on every load
+     * @return the knowledge base version
+     */
+    public long getKnowledgeBaseVersion() {
+        return indexes.version;
+    }
+    
+    /**
+     * Drops the cached search results, so the next searches run in full;
+     * the indexes are kept. Used by SlowQueryReplay to time each replay.
+     */
+    public void clearSearchResultCache() {
+        searchResultCache.clear();
+    }
+    
+    /**
+     * Drops the cached indexes so they are rebuilt from the current knowledge base
+     */
+    private synchronized void invalidateTaxonomyIndex() {
+        indexes = new KnowledgeBaseIndexes(indexes.version + 1);
+    }
+    
+    /**
+     * The indexes of one knowledge base version, each built on first use.
+     * Every index has its own lock, so a caller that needs a ready index is
+     * not held up while another one is being built.
+     */
+    private static final class KnowledgeBaseIndexes {
+        
+        private final long version;
+        private final LazyIndex<TaxonomyIndex> taxonomyIndex = new LazyIndex<>();
+        private final LazyIndex<GenreSimilarityIndex> similarityIndex = new LazyIndex<>();
+        private final LazyIndex<DescriptionSearchIndex> descriptionIndex = new LazyIndex<>();
+        private final LazyIndex<AncestorTable> ancestorTable = new LazyIndex<>();
+        private final LazyIndex<DisplayLabels> displayLabels = new LazyIndex<>();
+        private final LazyIndex<KnowledgeBaseStatistics> knowledgeBaseStatistics = new LazyIndex<>();
+        // The only copy of the property postings; they stay on the heap with either FrameStorage backend
+        private final LazyIndex<GenreBitmap[]> propertyPostings = new LazyIndex<>();
+        private final LazyIndex<GenreBitmap[]> inheritedPostings = new LazyIndex<>();
+        
+        private KnowledgeBaseIndexes(long version) {
+            this.version = version;
+        }
+    }
+    
+    /**
+     * An index built once, on first use, under its own lock
+     */
+    private static final class LazyIndex<T> {
+        
+        private volatile T value;
+        
+        /**
+         * Gets the index, building it if no caller has yet
+         * @param builder builds the index; called at most once
+         * @return the index
+         */
+        T get(Supplier<T> builder) {
+            T current = value;
+            if (current == null) {
+                synchronized (this) {
+                    current = value;
+                    if (current == null) {
+                        current = builder.get();
+                        value = current;
                     }
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error checking property for genre " + genreName + ": " + e.getMessage());
+            return current;
         }
-        return false;
+    }
+    
+    /**
+     * Result of a coalesced call with the status its run ended with
+     */
+    private static final class SharedResult {
+        
+        private final Object result;
+        private final QueryBudget.Status status;
+        
+        SharedResult(Object result, QueryBudget.Status status) {
+            this.result = result;
+            this.status = status;
+        }
+    }
+    
+    /**
+     * Converts a Prolog term into a plain name, without quotes for atoms
+     * @param term the term to convert
+     * @return the name of the term
+     */
+    private String termToName(Term term) {
+        return term.isAtom() ? term.name() : term.toString();
+    }
+    
+    /**
+     * Converts a Prolog list into plain names, keeping compound elements in their Prolog text form
+     * @param listTerm the list term returned by Prolog
+     * @return array of element names
+     */
+    private String[] listToNames(Term listTerm) {
+        if (listTerm == null) {
+            return new String[0];
+        }
+        if (!listTerm.isListPair() && !listTerm.isListNil()) {
+            System.out.println("Response is not a list - returning single item");
+            return new String[]{termToName(listTerm)};
+        }
+        
+        Term[] elements = listTerm.listToTermArray();
+        String[] names = new String[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            names[i] = termToName(elements[i]);
+        }
+        System.out.println("Successfully processed " + names.length + " items");
+        return names;
+    }
+    
+    /**
+     * Turns a set of genre ids back into names
+     * @param index the taxonomy index the ids refer to
+     * @param genreIds the genre ids
+     * @return the genre names, sorted because ids follow name order
+     */
+    private String[] genreNamesOf(TaxonomyIndex index, GenreBitmap genreIds) {
+        int[] ids = genreIds.toArray();
+        String[] names = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            names[i] = index.nameOf(ids[i]);
+        }
+        return names;
     }
     
     /**
@@ -296,12 +1354,15 @@ public class MusicGenreService {
             List<String> matchingGenres = new ArrayList<>();
             
             for (String currentGenre : allGenres) {
+                if (queryBudget.isExpired()) {
+                    System.out.println("Time limit reached, returning the genres checked so far");
+                    queryBudget.degrade(QueryBudget.Status.PARTIAL);
+                    break;
+                }
                 try {
-                    String propertiesQuery = "frame(" + currentGenre + ", _, Properties, _)";
-                    Query query = new Query(propertiesQuery);
+                    Map<String, Term> solution = solveWithinBudget(FRAME_PROPERTIES, PreparedQuery.atom(currentGenre));
                     
-                    if (query.hasSolution()) {
-                        Map<String, Term> solution = query.nextSolution();
+                    if (solution != null) {
                         Term propertiesTerm = solution.get("Properties");
                         
                         if (propertiesTerm != null) {
@@ -363,44 +1424,19 @@ public class MusicGenreService {
     
     /**
      * Performs an alternative property search when the main query fails
-     * @param originalQuery the original query that failed
+     * @param propertyTerm the property that was searched for
      * @return array of genre names
      */
-    private String[] performAlternativePropertySearch(String originalQuery) {
+    private String[] performAlternativePropertySearch(Term propertyTerm) {
         System.out.println("=== ALTERNATIVE PROPERTY SEARCH ===");
+        slowQueryLog.notePath("alternativa");
         
         try {
-            // Extract property name from query
-            if (originalQuery.contains("tiene_propiedad('") && originalQuery.contains("'")) {
-                int startIndex = originalQuery.indexOf("tiene_propiedad('") + 17;
-                int endIndex = originalQuery.indexOf("'", startIndex);
-                String propertyName = originalQuery.substring(startIndex, endIndex);
-                
-                System.out.println("Extracted property: " + propertyName);
-                
-                String[] allGenres = getAllMusicGenres();
-                if (allGenres == null) {
-                    System.out.println("Could not get genres list");
-                    return new String[0];
-                }
-                
-                List<String> genresWithProperty = new ArrayList<>();
-                
-                for (String currentGenre : allGenres) {
-                    try {
-                        String genreQuery = "frame(" + currentGenre + ", _, Properties, _), member(" + propertyName + ", Properties)";
-                        Query query = new Query(genreQuery);
-                        if (query.hasSolution()) {
-                            genresWithProperty.add(currentGenre);
-                            System.out.println("Genre '" + currentGenre + "' has property '" + propertyName + "'");
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error checking property for genre " + currentGenre + ": " + e.getMessage());
-                    }
-                }
-                
-                System.out.println("Alternative search found " + genresWithProperty.size() + " genres");
-                return genresWithProperty.toArray(new String[0]);
+            Map<String, Term> solution = solveWithinBudget(GENRES_WITH_DIRECT_PROPERTY, propertyTerm);
+            if (solution != null) {
+                String[] genresWithProperty = listToNames(solution.get("GenreList"));
+                System.out.println("Alternative search found " + genresWithProperty.length + " genres");
+                return genresWithProperty;
             }
         } catch (Exception e) {
             System.err.println("Error in alternative property search: " + e.getMessage());
@@ -414,12 +1450,19 @@ public class MusicGenreService {
      * @return the number of genres
      */
     public int getTotalGenreCount() {
-        try {
-            String[] allGenres = getAllMusicGenres();
-            return allGenres != null ? allGenres.length : 0;
-        } catch (Exception e) {
-            System.err.println("Error getting total genre count");
-            return 100; // fallback value
-        }
+        return getKnowledgeBaseStatistics().getGenreCount();
+    }
+    
+    /**
+     * Gets the statistics snapshot of the loaded knowledge base, computing it on first use
+     * @return genre and property counts, depth and fan-out histograms and property frequencies
+     */
+    public KnowledgeBaseStatistics getKnowledgeBaseStatistics() {
+        return knowledgeBaseStatisticsOf(indexes);
+    }
+    
+    private KnowledgeBaseStatistics knowledgeBaseStatisticsOf(KnowledgeBaseIndexes current) {
+        return current.knowledgeBaseStatistics.get(() -> new KnowledgeBaseStatistics(taxonomyIndexOf(current),
+            ancestorTableOf(current), current.version));
     }
 }
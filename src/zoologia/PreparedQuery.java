@@ -0,0 +1,146 @@
+package zoologia;
+
+import java.util.Arrays;
+import java.util.List;
+import org.jpl7.Atom;
+import org.jpl7.Compound;
+import org.jpl7.Query;
+import org.jpl7.Term;
+import org.jpl7.Util;
+
+/**
+ * Prolog goal template with named parameters. The template text is parsed
+ * once, on first use, and every call substitutes the parameter variables
+ * with Term arguments. Arguments are never turned back into source text,
+ * so names with quotes or operators cannot change the goal that runs.
+ */
+public class PreparedQuery {
+
+    private final String templateText;
+    private final List<String> parameterNames;
+    private volatile Term templateGoal;
+
+    /**
+     * Creates a prepared query
+     * @param templateText the goal, for example "jerarquia_clase(Genre, HierarchyList)"
+     * @param parameterNames the variables in the template that are bound per call, in argument order
+     */
+    public PreparedQuery(String templateText, String... parameterNames) {
+        this.templateText = templateText;
+        this.parameterNames = Arrays.asList(parameterNames);
+    }
+
+    /**
+     * Creates a query with the parameters bound to the given arguments
+     * @param arguments one term per parameter name
+     * @return a new query ready to run
+     */
+    public Query bind(Term... arguments) {
+        return new Query(bindGoal(arguments));
+    }
+
+    /**
+     * Creates a query with the parameters bound, run in the context of a Prolog module
+     * @param moduleName the module whose facts the goal should see, such as "user"
+     * @param arguments one term per parameter name
+     * @return a new query for moduleName:Goal
+     */
+    public Query bindIn(String moduleName, Term... arguments) {
+        return new Query(goalIn(moduleName, arguments));
+    }
+
+    /**
+     * Builds the goal term with the parameters bound, qualified with a Prolog module,
+     * for callers that wrap it in another goal
+     * @param moduleName the module whose facts the goal should see, such as "user"
+     * @param arguments one term per parameter name
+     * @return the term moduleName:Goal
+     */
+    public Term goalIn(String moduleName, Term... arguments) {
+        return new Compound(":", new Term[]{new Atom(moduleName), bindGoal(arguments)});
+    }
+
+    /**
+     * Gets the template text, for logging
+     * @return the goal template as written
+     */
+    public String getTemplateText() {
+        return templateText;
+    }
+
+    /**
+     * Builds the goal term with the parameters bound
+     */
+    private Term bindGoal(Term[] arguments) {
+        if (arguments.length != parameterNames.size()) {
+            throw new IllegalArgumentException("Expected " + parameterNames.size()
+                    + " arguments for " + templateText + " but got " + arguments.length);
+        }
+        return substitute(getTemplateGoal(), arguments);
+    }
+
+    /**
+     * Parses the template the first time it is needed
+     */
+    private Term getTemplateGoal() {
+        Term goal = templateGoal;
+        if (goal == null) {
+            synchronized (this) {
+                goal = templateGoal;
+                if (goal == null) {
+                    goal = Util.textToTerm(templateText);
+                    templateGoal = goal;
+                }
+            }
+        }
+        return goal;
+    }
+
+    /**
+     * Rebuilds a term with the parameter variables replaced by their arguments
+     */
+    private Term substitute(Term term, Term[] arguments) {
+        if (term.isVariable()) {
+            int parameterIndex = parameterNames.indexOf(term.name());
+            return parameterIndex >= 0 ? arguments[parameterIndex] : term;
+        }
+        if (term.isCompound()) {
+            Term[] templateArguments = term.args();
+            Term[] boundArguments = new Term[templateArguments.length];
+            for (int i = 0; i < templateArguments.length; i++) {
+                boundArguments[i] = substitute(templateArguments[i], arguments);
+            }
+            return new Compound(term.name(), boundArguments);
+        }
+        return term;
+    }
+
+    /**
+     * Builds the term for a plain name, such as a genre or a file path
+     * @param name the name
+     * @return an atom with exactly that name
+     */
+    public static Term atom(String name) {
+        return new Atom(name);
+    }
+
+    /**
+     * Builds the term for a property written as text, such as usa(bateria) or origen_decada(1970),
+     * without asking Prolog to parse it
+     * @param propertyText the property text
+     * @return a compound with one atom or integer argument, or an atom if the text has another shape
+     */
+    public static Term property(String propertyText) {
+        String text = propertyText.trim();
+        int openIndex = text.indexOf('(');
+        if (openIndex <= 0 || !text.endsWith(")") || text.indexOf('(', openIndex + 1) >= 0
+                || text.indexOf(',') >= 0 || text.indexOf('\'') >= 0) {
+            return new Atom(text);
+        }
+
+        String functor = text.substring(0, openIndex);
+        String value = text.substring(openIndex + 1, text.length() - 1).trim();
+        Term valueTerm = value.matches("-?\\d{1,18}") ? new org.jpl7.Integer(Long.parseLong(value)) : new Atom(value);
+        return new Compound(functor, new Term[]{valueTerm});
+    }
+}
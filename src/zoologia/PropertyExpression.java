@@ -0,0 +1,329 @@
+package zoologia;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Boolean query over properties, such as
+ * "usa(sintetizador) Y energia(alta) Y NO origen_pais(usa)".
+ * Operators are AND/Y, OR/O and NOT/NO in any case, a comma also means AND,
+ * and parentheses group. NOT binds tighter than AND, and AND tighter than OR.
+ * The expression is evaluated as set operations over genre id sets.
+ */
+public class PropertyExpression {
+
+    private final Node root;
+
+    private PropertyExpression(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Parses an expression
+     * @param expressionText the expression text
+     * @return the parsed expression
+     * @throws IllegalArgumentException if the text is not a valid expression
+     */
+    public static PropertyExpression parse(String expressionText) {
+        Parser parser = new Parser(tokenize(expressionText));
+        Node root = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position).text + "'");
+        }
+        return new PropertyExpression(root);
+    }
+
+    /**
+     * Gets the properties the expression refers to
+     * @return the distinct property names, in order of appearance
+     */
+    public Set<String> getProperties() {
+        Set<String> properties = new LinkedHashSet<>();
+        root.collectProperties(properties);
+        return properties;
+    }
+
+    /**
+     * Evaluates the expression, looking up each property once
+     * @param resolver gives the genre set of a property
+     * @param allGenres every genre, the set NOT subtracts from
+     * @return the genres that satisfy the expression
+     */
+    public GenreBitmap evaluate(Function<String, GenreBitmap> resolver, GenreBitmap allGenres) {
+        Map<String, GenreBitmap> resolved = new HashMap<>();
+        for (String property : getProperties()) {
+            resolved.put(property, resolver.apply(property));
+        }
+        return root.evaluate(resolved, allGenres);
+    }
+
+    /**
+     * Writes the expression with English operators and full parentheses, so
+     * equivalent spellings give the same text
+     * @return the canonical expression text
+     */
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * Splits the text into parentheses, commas, operator words and properties.
+     * A property keeps its own parentheses, including quoted atoms inside them.
+     */
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',') {
+                tokens.add(new Token(String.valueOf(c), false));
+                i++;
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                        && "(),".indexOf(text.charAt(i)) < 0) {
+                    i++;
+                }
+                String word = text.substring(start, i);
+                if (operatorOf(word) != null || i == text.length() || text.charAt(i) != '(') {
+                    tokens.add(new Token(word, operatorOf(word) == null));
+                    continue;
+                }
+
+                // functor(arguments): read up to the matching parenthesis
+                int depth = 0;
+                boolean quoted = false;
+                do {
+                    char current = text.charAt(i);
+                    if (current == '\'') {
+                        quoted = !quoted;
+                    } else if (!quoted && current == '(') {
+                        depth++;
+                    } else if (!quoted && current == ')') {
+                        depth--;
+                    }
+                    i++;
+                } while (depth > 0 && i < text.length());
+                if (depth > 0) {
+                    throw new IllegalArgumentException("Missing ')' in " + text.substring(start));
+                }
+                tokens.add(new Token(text.substring(start, i), true));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Maps an operator word to AND, OR or NOT
+     */
+    private static String operatorOf(String word) {
+        switch (word.toUpperCase(Locale.ROOT)) {
+            case "AND":
+            case "Y":
+                return "AND";
+            case "OR":
+            case "O":
+                return "OR";
+            case "NOT":
+            case "NO":
+                return "NOT";
+            default:
+                return null;
+        }
+    }
+
+    private static final class Token {
+
+        private final String text;
+        private final boolean property;
+
+        Token(String text, boolean property) {
+            this.text = text;
+            this.property = property;
+        }
+    }
+
+    /**
+     * Recursive descent parser: or := and (OR and)*, and := not ((AND | ,) not)*,
+     * not := NOT not | ( or ) | property
+     */
+    private static final class Parser {
+
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (accept("OR")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new CombinedNode(false, operands);
+        }
+
+        Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseNot());
+            while (accept("AND") || accept(",")) {
+                operands.add(parseNot());
+            }
+            return operands.size() == 1 ? operands.get(0) : new CombinedNode(true, operands);
+        }
+
+        Node parseNot() {
+            if (position == tokens.size()) {
+                throw new IllegalArgumentException("Expression ends where a property was expected");
+            }
+            if (accept("NOT")) {
+                return new NotNode(parseNot());
+            }
+            if (accept("(")) {
+                Node grouped = parseOr();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("Missing ')'");
+                }
+                return grouped;
+            }
+            Token token = tokens.get(position);
+            if (!token.property) {
+                throw new IllegalArgumentException("Expected a property but found '" + token.text + "'");
+            }
+            position++;
+            return new PropertyNode(token.text);
+        }
+
+        /**
+         * Consumes the next token if it is the given operator or punctuation
+         */
+        private boolean accept(String expected) {
+            if (position < tokens.size()) {
+                Token token = tokens.get(position);
+                String symbol = token.property ? null
+                        : operatorOf(token.text) != null ? operatorOf(token.text) : token.text;
+                if (expected.equals(symbol)) {
+                    position++;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private abstract static class Node {
+
+        abstract GenreBitmap evaluate(Map<String, GenreBitmap> resolved, GenreBitmap allGenres);
+
+        abstract void collectProperties(Set<String> properties);
+    }
+
+    private static final class PropertyNode extends Node {
+
+        private final String property;
+
+        PropertyNode(String property) {
+            this.property = property;
+        }
+
+        @Override
+        GenreBitmap evaluate(Map<String, GenreBitmap> resolved, GenreBitmap allGenres) {
+            return resolved.get(property);
+        }
+
+        @Override
+        void collectProperties(Set<String> properties) {
+            properties.add(property);
+        }
+
+        @Override
+        public String toString() {
+            return property;
+        }
+    }
+
+    private static final class NotNode extends Node {
+
+        private final Node operand;
+
+        NotNode(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        GenreBitmap evaluate(Map<String, GenreBitmap> resolved, GenreBitmap allGenres) {
+            return allGenres.andNot(operand.evaluate(resolved, allGenres));
+        }
+
+        @Override
+        void collectProperties(Set<String> properties) {
+            operand.collectProperties(properties);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+
+    private static final class CombinedNode extends Node {
+
+        private final boolean conjunction;
+        private final List<Node> operands;
+
+        CombinedNode(boolean conjunction, List<Node> operands) {
+            this.conjunction = conjunction;
+            this.operands = operands;
+        }
+
+        @Override
+        GenreBitmap evaluate(Map<String, GenreBitmap> resolved, GenreBitmap allGenres) {
+            // a AND NOT b is computed as a ANDNOT b, without building the complement of b
+            GenreBitmap result = null;
+            List<Node> negated = new ArrayList<>();
+            for (Node operand : operands) {
+                if (conjunction && operand instanceof NotNode) {
+                    negated.add(((NotNode) operand).operand);
+                    continue;
+                }
+                GenreBitmap operandGenres = operand.evaluate(resolved, allGenres);
+                result = result == null ? operandGenres
+                        : conjunction ? result.and(operandGenres) : result.or(operandGenres);
+            }
+            if (result == null) {
+                result = allGenres;
+            }
+            for (Node operand : negated) {
+                result = result.andNot(operand.evaluate(resolved, allGenres));
+            }
+            return result;
+        }
+
+        @Override
+        void collectProperties(Set<String> properties) {
+            for (Node operand : operands) {
+                operand.collectProperties(properties);
+            }
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            for (Node operand : operands) {
+                parts.add(operand.toString());
+            }
+            return "(" + String.join(conjunction ? " AND " : " OR ", parts) + ")";
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package zoologia;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.jpl7.Compound;
+import org.jpl7.Term;
+import org.jpl7.Variable;
+
+/**
+ * Wall-clock and inference limits for service calls. A call starts a
+ * deadline on its thread; every Prolog goal it runs is wrapped in
+ * call_with_time_limit/2 with the time left and call_with_inference_limit/3,
+ * and Java-side loops stop when the deadline passes. Calls that hit a limit
+ * finish with a partial or empty result and a status saying why, and are
+ * counted in the metrics.
+ *
+ * Defaults come from -Dzoologia.query.timeLimitMs (2000) and
+ * -Dzoologia.query.inferenceLimit (50000000).
+ */
+public class QueryBudget {
+
+    /** Name of the variable that receives the call_with_inference_limit/3 result */
+    public static final String LIMIT_RESULT_VARIABLE = "BudgetLimitResult";
+
+    /**
+     * How a service call ended
+     */
+    public enum Status {
+        /** The call finished within its limits */
+        COMPLETE,
+        /** The deadline passed during a Java-side scan; the result holds what was found so far */
+        PARTIAL,
+        /** A Prolog goal ran out of inferences; its part of the result is missing */
+        INFERENCE_LIMIT_EXCEEDED,
+        /** A Prolog goal ran out of time; its part of the result is missing */
+        TIMED_OUT
+    }
+
+    private final long timeLimitMillis;
+    private final long inferenceLimit;
+    private final ThreadLocal<Call> currentCall = new ThreadLocal<>();
+    private final ThreadLocal<Status> lastStatus = ThreadLocal.withInitial(() -> Status.COMPLETE);
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong[] statusCounts = new AtomicLong[Status.values().length];
+
+    /**
+     * Creates a budget
+     * @param timeLimitMillis the wall-clock limit of one service call
+     * @param inferenceLimit the inference limit of each Prolog goal
+     */
+    public QueryBudget(long timeLimitMillis, long inferenceLimit) {
+        this.timeLimitMillis = timeLimitMillis;
+        this.inferenceLimit = inferenceLimit;
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Creates a budget from the zoologia.query.* system properties
+     * @return the configured budget
+     */
+    public static QueryBudget fromSystemProperties() {
+        return new QueryBudget(Long.getLong("zoologia.query.timeLimitMs", 2000),
+                Long.getLong("zoologia.query.inferenceLimit", 50_000_000));
+    }
+
+    /**
+     * Starts a service call on this thread, or joins the call already running
+     * so nested service calls share one deadline
+     */
+    public void begin() {
+        Call call = currentCall.get();
+        if (call == null) {
+            currentCall.set(new Call(System.nanoTime() + timeLimitMillis * 1_000_000));
+        } else {
+            call.depth++;
+        }
+    }
+
+    /**
+     * Ends a service call; the outermost end records the status
+     * @return the status of the call so far
+     */
+    public Status end() {
+        Call call = currentCall.get();
+        if (call == null) {
+            return Status.COMPLETE;
+        }
+        if (call.depth > 0) {
+            call.depth--;
+            return call.status;
+        }
+        currentCall.remove();
+        lastStatus.set(call.status);
+        callCount.incrementAndGet();
+        statusCounts[call.status.ordinal()].incrementAndGet();
+        return call.status;
+    }
+
+    /**
+     * Checks whether the current call has run out of time
+     * @return true if the deadline has passed
+     */
+    public boolean isExpired() {
+        Call call = currentCall.get();
+        return call != null && System.nanoTime() >= call.deadlineNanos;
+    }
+
+    /**
+     * Records that the current call could not do all of its work
+     * @param status why the result is incomplete; the most severe status is kept
+     */
+    public void degrade(Status status) {
+        Call call = currentCall.get();
+        if (call != null && status.ordinal() > call.status.ordinal()) {
+            call.status = status;
+        }
+    }
+
+    /**
+     * Gets the status of the call running on this thread
+     * @return the status so far, COMPLETE outside a call
+     */
+    public Status currentStatus() {
+        Call call = currentCall.get();
+        return call != null ? call.status : Status.COMPLETE;
+    }
+
+    /**
+     * Wraps a goal in the time and inference limits of the current call
+     * @param goal the goal to bound
+     * @return call_with_time_limit(Seconds, call_with_inference_limit(Goal, Limit, BudgetLimitResult))
+     */
+    public Term limit(Term goal) {
+        Call call = currentCall.get();
+        long remainingNanos = call != null ? call.deadlineNanos - System.nanoTime() : timeLimitMillis * 1_000_000;
+        double remainingSeconds = Math.max(0.001, remainingNanos / 1e9);
+        Term limitedGoal = new Compound("call_with_inference_limit", new Term[]{
+                goal, new org.jpl7.Integer(inferenceLimit), new Variable(LIMIT_RESULT_VARIABLE)});
+        return new Compound("call_with_time_limit", new Term[]{new org.jpl7.Float(remainingSeconds), limitedGoal});
+    }
+
+    /**
+     * Gets how the last finished call on this thread ended
+     * @return the status of the last call
+     */
+    public Status getLastStatus() {
+        return lastStatus.get();
+    }
+
+    /**
+     * Gets the number of finished calls that ended with a status
+     * @param status the status to count
+     * @return the number of calls
+     */
+    public long countOf(Status status) {
+        return statusCounts[status.ordinal()].get();
+    }
+
+    /**
+     * Formats the call counts for reports
+     * @return one line with the total and the count per status
+     */
+    public String formatMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        metrics.append("Calls: ").append(callCount.get());
+        for (Status status : Status.values()) {
+            metrics.append(", ").append(status.name().toLowerCase()).append(": ").append(countOf(status));
+        }
+        metrics.append(" (limits ").append(timeLimitMillis).append(" ms, ")
+               .append(inferenceLimit).append(" inferences)");
+        return metrics.toString();
+    }
+
+    private static final class Call {
+
+        private final long deadlineNanos;
+        private int depth;
+        private Status status = Status.COMPLETE;
+
+        Call(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
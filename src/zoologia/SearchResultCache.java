@@ -0,0 +1,112 @@
+package zoologia;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Size-bounded cache of property search results. Entries are keyed by the
+ * sorted, deduplicated property set and the search criteria, and the whole
+ * cache is dropped when the knowledge base version changes.
+ */
+public class SearchResultCache {
+
+    private final int maxEntries;
+    private final Map<String, String[]> entries;
+    private long cachedVersion = -1;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache with least-recently-used eviction
+     * @param maxEntries the maximum number of cached results
+     */
+    public SearchResultCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+                return size() > SearchResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Sorts and deduplicates a property selection
+     * @param properties the selected properties, in any order
+     * @return the canonical property set
+     */
+    public static String[] canonicalize(String[] properties) {
+        TreeSet<String> canonical = new TreeSet<>();
+        for (String property : properties) {
+            canonical.add(property.trim());
+        }
+        return canonical.toArray(new String[0]);
+    }
+
+    /**
+     * Looks up a cached result
+     * @param canonicalProperties the canonical property set
+     * @param searchCriteria "todas", "alguna" or "expresion"
+     * @param knowledgeBaseVersion the current knowledge base version
+     * @return the cached genres, or null if not cached
+     */
+    public synchronized String[] get(String[] canonicalProperties, String searchCriteria, long knowledgeBaseVersion) {
+        checkVersion(knowledgeBaseVersion);
+        String[] cachedResult = entries.get(key(canonicalProperties, searchCriteria));
+        if (cachedResult == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return cachedResult;
+    }
+
+    /**
+     * Stores a result
+     * @param canonicalProperties the canonical property set
+     * @param searchCriteria "todas", "alguna" or "expresion"
+     * @param knowledgeBaseVersion the knowledge base version the result was computed on
+     * @param result the matching genres, sorted by name
+     */
+    public synchronized void put(String[] canonicalProperties, String searchCriteria, long knowledgeBaseVersion,
+                                 String[] result) {
+        checkVersion(knowledgeBaseVersion);
+        entries.put(key(canonicalProperties, searchCriteria), result);
+    }
+
+    /**
+     * Drops every cached result
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the hit ratio since the cache was created
+     * @return hits divided by lookups, or 0 if there were no lookups
+     */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Clears the cache when the knowledge base has been reloaded since the last access
+     */
+    private void checkVersion(long knowledgeBaseVersion) {
+        if (knowledgeBaseVersion != cachedVersion) {
+            entries.clear();
+            cachedVersion = knowledgeBaseVersion;
+        }
+    }
+
+    /**
+     * Builds the cache key. A single property gives the same result for
+     * "todas" and "alguna", so those entries are shared.
+     */
+    private static String key(String[] canonicalProperties, String searchCriteria) {
+        String criteria = canonicalProperties.length == 1 && searchCriteria.equals("alguna") ? "todas" : searchCriteria;
+        return criteria + "|" + String.join("\u0000", canonicalProperties);
+    }
+}
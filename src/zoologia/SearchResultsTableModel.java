@@ -0,0 +1,203 @@
+package zoologia;
+
+import java.util.function.UnaryOperator;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Lazy table model over the genres of a search result. Only the result
+ * names, their ids and the row order are held; labels, parents and depths
+ * are looked up when the JTable paints a row, so a result with tens of
+ * thousands of genres costs no more to show than the rows on screen.
+ * Sorting reorders the array of row positions in place by integer keys:
+ * genre and parent ids follow name order, so no label is built to sort.
+ * Parents and depths both come from the AncestorTable, so they describe
+ * the same tree.
+ */
+public class SearchResultsTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Column of the genre label */
+    public static final int GENRE_COLUMN = 0;
+
+    /** Column of the parent label */
+    public static final int PARENT_COLUMN = 1;
+
+    /** Column of the depth below the virtual root */
+    public static final int DEPTH_COLUMN = 2;
+
+    /** Column of the number of searched properties the genre has */
+    public static final int MATCH_COLUMN = 3;
+
+    private static final String[] COLUMN_NAMES = {"Género", "Padre", "Profundidad", "Coincidencias"};
+
+    private final TaxonomyIndex taxonomyIndex;
+    private final AncestorTable ancestorTable;
+    private final UnaryOperator<String> genreLabels;
+    private final String[] genreNames;
+    private final int[] genreIds;
+    private final int[] matchCounts;
+    private final int[] rowOrder;
+    private int sortColumn = -1;
+    private boolean sortAscending = true;
+
+    /**
+     * Creates a model over a search result, in the order the search returned it
+     * @param taxonomyIndex the index the genres belong to
+     * @param ancestorTable the depths of the genres
+     * @param genreLabels turns a genre or parent name into its display label
+     * @param genreNames the genres found; the array is kept, not copied
+     * @param matchCounts the number of searched properties of each genre, or null if the search has none
+     */
+    public SearchResultsTableModel(TaxonomyIndex taxonomyIndex, AncestorTable ancestorTable,
+                                   UnaryOperator<String> genreLabels, String[] genreNames, int[] matchCounts) {
+        this.taxonomyIndex = taxonomyIndex;
+        this.ancestorTable = ancestorTable;
+        this.genreLabels = genreLabels;
+        this.genreNames = genreNames;
+        this.matchCounts = matchCounts;
+        this.genreIds = new int[genreNames.length];
+        this.rowOrder = new int[genreNames.length];
+        for (int row = 0; row < genreNames.length; row++) {
+            genreIds[row] = taxonomyIndex.idOf(genreNames[row]);
+            rowOrder[row] = row;
+        }
+    }
+
+    /**
+     * Creates a model without rows, shown before the first search
+     * @return the empty model
+     */
+    public static SearchResultsTableModel empty() {
+        return new SearchResultsTableModel(null, null, name -> name, new String[0], null);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowOrder.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column != sortColumn) {
+            return COLUMN_NAMES[column];
+        }
+        return COLUMN_NAMES[column] + (sortAscending ? " ▲" : " ▼");
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == DEPTH_COLUMN || column == MATCH_COLUMN ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int resultPosition = rowOrder[row];
+        int genreId = genreIds[resultPosition];
+        switch (column) {
+            case GENRE_COLUMN:
+                return genreLabels.apply(genreNames[resultPosition]);
+            case PARENT_COLUMN:
+                if (genreId < 0) {
+                    return "";
+                }
+                int parentId = ancestorTable.ancestorOf(genreId, 1);
+                return genreLabels.apply(parentId == AncestorTable.VIRTUAL_ROOT
+                    ? TaxonomyIndex.ROOT_NAME : taxonomyIndex.nameOf(parentId));
+            case DEPTH_COLUMN:
+                return genreId < 0 ? null : ancestorTable.depthOf(genreId);
+            case MATCH_COLUMN:
+                return matchCounts == null ? null : matchCounts[resultPosition];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets the genre shown in a row
+     * @param row the row in the current order
+     * @return the genre name as the search returned it
+     */
+    public String getGenreNameAt(int row) {
+        return genreNames[rowOrder[row]];
+    }
+
+    /**
+     * Sorts by a column, reversing the order if the table is already sorted by it.
+     * Rows with equal values keep the order the search returned them in.
+     * @param column the column to sort by
+     */
+    public void toggleSort(int column) {
+        sortAscending = column != sortColumn || !sortAscending;
+        sortColumn = column;
+
+        // Heapsort in place; ties compare by result position, so the order is stable without a copy
+        int rowCount = rowOrder.length;
+        for (int root = rowCount / 2 - 1; root >= 0; root--) {
+            siftDown(root, rowCount);
+        }
+        for (int end = rowCount - 1; end > 0; end--) {
+            swapRows(0, end);
+            siftDown(0, end);
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Moves a row down the heap held in the first rows until both of its children sort before it
+     */
+    private void siftDown(int root, int end) {
+        while (2 * root + 1 < end) {
+            int child = 2 * root + 1;
+            if (child + 1 < end && compareResults(rowOrder[child + 1], rowOrder[child]) > 0) {
+                child++;
+            }
+            if (compareResults(rowOrder[root], rowOrder[child]) >= 0) {
+                return;
+            }
+            swapRows(root, child);
+            root = child;
+        }
+    }
+
+    private void swapRows(int firstRow, int secondRow) {
+        int resultPosition = rowOrder[firstRow];
+        rowOrder[firstRow] = rowOrder[secondRow];
+        rowOrder[secondRow] = resultPosition;
+    }
+
+    /**
+     * Compares two results in the current sort, by key and then by search order
+     */
+    private int compareResults(int firstPosition, int secondPosition) {
+        int comparison = Integer.compare(sortKey(sortColumn, firstPosition), sortKey(sortColumn, secondPosition));
+        if (!sortAscending) {
+            comparison = -comparison;
+        }
+        return comparison != 0 ? comparison : Integer.compare(firstPosition, secondPosition);
+    }
+
+    /**
+     * Gets the integer a result sorts by in a column, -1 where it has no value
+     */
+    private int sortKey(int column, int resultPosition) {
+        int genreId = genreIds[resultPosition];
+        switch (column) {
+            case GENRE_COLUMN:
+                return genreId;
+            case PARENT_COLUMN:
+                return genreId < 0 ? -1 : ancestorTable.ancestorOf(genreId, 1);
+            case DEPTH_COLUMN:
+                return genreId < 0 ? -1 : ancestorTable.depthOf(genreId);
+            case MATCH_COLUMN:
+                return matchCounts == null ? -1 : matchCounts[resultPosition];
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package zoologia;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the hot paths of a MusicGenreService a number of times before the
+ * service is reported ready. The first rounds build every lazy index and load
+ * the classes of each search path, and the following ones give the JIT
+ * enough calls to compile them, so the first user query does not pay for
+ * any of that. Search results are cleared after every round, so each round
+ * runs the full searches and the warm-up leaves nothing in the cache.
+ *
+ * Enabled with -Dzoologia.warmup=true; -Dzoologia.warmup.rounds sets the
+ * number of rounds (20).
+ */
+public class ServiceWarmup {
+
+    /** System property that enables the warm-up at startup */
+    public static final String ENABLED_PROPERTY = "zoologia.warmup";
+
+    /** System property with the number of warm-up rounds */
+    public static final String ROUNDS_PROPERTY = "zoologia.warmup.rounds";
+
+    /** Genres and properties exercised per round, spread over the knowledge base */
+    private static final int SAMPLE_SIZE = 8;
+
+    private final MusicGenreService musicGenreService;
+    private String[] sampleGenres;
+    private String[] sampleProperties;
+    private String[] sampleWords;
+
+    /**
+     * Creates a warm-up for a service whose knowledge base is already loaded
+     * @param musicGenreService the service to warm up
+     */
+    public ServiceWarmup(MusicGenreService musicGenreService) {
+        this.musicGenreService = musicGenreService;
+    }
+
+    /**
+     * Checks whether the warm-up was requested on the command line
+     * @return true if zoologia.warmup is true
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Gets the number of rounds requested on the command line
+     * @return zoologia.warmup.rounds, at least 1
+     */
+    public static int roundsFromSystemProperty() {
+        return Math.max(1, Integer.getInteger(ROUNDS_PROPERTY, 20));
+    }
+
+    /**
+     * Runs the warm-up
+     * @param rounds how many times every hot path is called
+     * @return the number of service calls made
+     */
+    public int run(int rounds) {
+        int calls = 0;
+        for (int round = 0; round < rounds; round++) {
+            calls += runRound();
+        }
+        return calls;
+    }
+
+    /**
+     * Calls every hot path once: the genre and property lists, the genre
+     * details, the single, multiple, expression and description searches,
+     * the property facet counts, similar genres and the ancestor queries
+     * @return the number of service calls made
+     */
+    public int runRound() {
+        if (sampleGenres == null) {
+            selectSamples();
+        }
+        int calls = 0;
+        try {
+            musicGenreService.getAllMusicGenres();
+            musicGenreService.getAllAvailableProperties();
+            calls += 2;
+
+            for (String genre : sampleGenres) {
+                musicGenreService.getGenreProperties(genre);
+                musicGenreService.getGenreLabel(genre);
+                musicGenreService.getGenreHierarchy(genre);
+                musicGenreService.getGenreDescription(genre);
+                musicGenreService.getGenreDepth(genre);
+                musicGenreService.findSimilarGenres(genre, 10, false);
+                calls += 6;
+            }
+
+            for (int i = 0; i < sampleProperties.length; i++) {
+                String property = sampleProperties[i];
+                String nextProperty = sampleProperties[(i + 1) % sampleProperties.length];
+                musicGenreService.getPropertyLabel(property);
+                musicGenreService.findGenresWithProperty(property);
+                musicGenreService.findGenresWithMultipleProperties(new String[]{property, nextProperty}, "todas");
+                musicGenreService.findGenresWithMultipleProperties(new String[]{property, nextProperty}, "alguna");
+                musicGenreService.getPropertyFacetCounts(new String[]{property}, "todas");
+                calls += 5;
+                try {
+                    musicGenreService.findGenresMatchingExpression(property + " O NO " + nextProperty);
+                    calls++;
+                } catch (IllegalArgumentException e) {
+                    // Property names that do not parse as an expression are skipped
+                }
+            }
+
+            for (String word : sampleWords) {
+                musicGenreService.findGenresByDescription(word, 20);
+                calls++;
+            }
+
+            String[] pairedGenres = new String[sampleGenres.length];
+            for (int i = 0; i < pairedGenres.length; i++) {
+                pairedGenres[i] = sampleGenres[(i + 1) % sampleGenres.length];
+            }
+            musicGenreService.findCommonAncestors(sampleGenres, pairedGenres);
+            musicGenreService.getGenreDistances(sampleGenres, pairedGenres);
+            calls += 2;
+        } catch (Exception e) {
+            System.err.println("Error warming up the service: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            musicGenreService.clearSearchResultCache();
+        }
+        return calls;
+    }
+
+    /**
+     * Picks genres and properties evenly spread over the taxonomy index, and
+     * the first word of each sampled genre's description
+     */
+    private void selectSamples() {
+        TaxonomyIndex taxonomyIndex = musicGenreService.getTaxonomyIndex();
+
+        int genreCount = Math.min(SAMPLE_SIZE, taxonomyIndex.size());
+        sampleGenres = new String[genreCount];
+        sampleWords = new String[genreCount];
+        int wordCount = 0;
+        for (int i = 0; i < genreCount; i++) {
+            int genreId = (int) ((long) i * taxonomyIndex.size() / genreCount);
+            sampleGenres[i] = taxonomyIndex.nameOf(genreId);
+            List<String> words = DescriptionSearchIndex.tokenize(taxonomyIndex.descriptionOf(genreId));
+            if (!words.isEmpty()) {
+                sampleWords[wordCount++] = words.get(0);
+            }
+        }
+        sampleWords = Arrays.copyOf(sampleWords, wordCount);
+
+        int propertyCount = Math.min(SAMPLE_SIZE, taxonomyIndex.propertyCount());
+        sampleProperties = new String[propertyCount];
+        for (int i = 0; i < propertyCount; i++) {
+            int propertyId = (int) ((long) i * taxonomyIndex.propertyCount() / propertyCount);
+            sampleProperties[i] = taxonomyIndex.propertyNameOf(propertyId);
+        }
+    }
+}
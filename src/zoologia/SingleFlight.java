@@ -0,0 +1,128 @@
+package zoologia;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls. The first caller of a key runs the
+ * work; callers that arrive with the same key while it runs wait for the
+ * same future instead of repeating the work. The key is forgotten when the
+ * work finishes, so later calls run again; results are not cached here.
+ *
+ * A call made while the same thread is already running coalesced work runs
+ * directly, so nested calls can never wait on each other.
+ *
+ * @param <V> the result type
+ */
+public class SingleFlight<V> {
+
+    private final ConcurrentMap<String, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder[]> operationCounts = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> runningFlight = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+    private final AtomicInteger maxWaiters = new AtomicInteger();
+
+    /**
+     * Runs the work for a key, or waits for the run already in progress for it
+     * @param operation the kind of call, used to group the metrics
+     * @param key the normalized call, equal for calls that must return the same result
+     * @param work computes the result
+     * @return the result of this call's run or of the run it joined
+     */
+    public V execute(String operation, String key, Supplier<V> work) {
+        if (runningFlight.get()) {
+            return work.get();
+        }
+
+        Flight<V> flight = new Flight<>();
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+        LongAdder[] counts = operationCounts.computeIfAbsent(operation,
+                ignored -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        if (existing != null) {
+            coalescedCalls.incrementAndGet();
+            counts[1].increment();
+            maxWaiters.accumulateAndGet(existing.waiters.incrementAndGet(), Math::max);
+            try {
+                return existing.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        executions.incrementAndGet();
+        counts[0].increment();
+        runningFlight.set(Boolean.TRUE);
+        try {
+            V result = work.get();
+            flight.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            runningFlight.set(Boolean.FALSE);
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Gets the number of calls that ran their work
+     * @return the execution count
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * Gets the number of calls that joined a run already in progress
+     * @return the coalesced call count
+     */
+    public long getCoalescedCalls() {
+        return coalescedCalls.get();
+    }
+
+    /**
+     * Gets the share of calls that were served by another caller's run
+     * @return coalesced calls divided by all calls, or 0 if there were none
+     */
+    public double getCoalescingRate() {
+        long coalesced = coalescedCalls.get();
+        long total = coalesced + executions.get();
+        return total == 0 ? 0.0 : (double) coalesced / total;
+    }
+
+    /**
+     * Formats the counts for reports
+     * @return a total line and one line per operation with coalesced calls
+     */
+    public String formatMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        metrics.append(String.format("Coalescing: %d executions, %d coalesced (%.1f%%), max %d waiters on one key",
+                executions.get(), coalescedCalls.get(), getCoalescingRate() * 100, maxWaiters.get()));
+        for (Map.Entry<String, LongAdder[]> operation : new TreeMap<>(operationCounts).entrySet()) {
+            long operationExecutions = operation.getValue()[0].sum();
+            long operationCoalesced = operation.getValue()[1].sum();
+            if (operationCoalesced > 0) {
+                metrics.append(String.format("%n  %-34s %8d executions %8d coalesced (%.1f%%)",
+                        operation.getKey(), operationExecutions, operationCoalesced,
+                        100.0 * operationCoalesced / (operationExecutions + operationCoalesced)));
+            }
+        }
+        return metrics.toString();
+    }
+
+    private static final class Flight<V> {
+
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+    }
+}
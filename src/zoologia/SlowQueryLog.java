@@ -0,0 +1,330 @@
+package zoologia;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records service calls that take longer than a threshold. Each entry holds
+ * the operation and its parameters, the storage backend and module, the
+ * latency, the number of results, the fallback path taken and the Prolog
+ * goals that ran with their own timings, so SlowQueryReplay can run the
+ * same calls again. Entries are written as tab-separated lines through an
+ * AsyncRotatingAppender.
+ *
+ * Configured with -Dzoologia.slowQuery.thresholdMs (500, negative disables),
+ * -Dzoologia.slowQuery.file (logs/slow_queries.log),
+ * -Dzoologia.slowQuery.maxBytes (10485760) and -Dzoologia.slowQuery.maxFiles (5).
+ */
+public class SlowQueryLog {
+
+    /** Column names, written as the first line of every log file */
+    public static final String HEADER =
+        "# timestamp\tlatency_ms\tbackend\tmodule\toperation\tstatus\tresults\tpath\tgoals\tparameters...";
+
+    /** Goals kept per entry; the manual search runs one goal per genre */
+    private static final int MAX_GOALS_PER_ENTRY = 20;
+
+    private static SlowQueryLog defaultLog;
+
+    private final long thresholdNanos;
+    private final AsyncRotatingAppender appender;
+    private final ThreadLocal<Trace> currentTrace = new ThreadLocal<>();
+
+    /**
+     * Creates a log
+     * @param thresholdMillis calls at or above this latency are logged; negative disables the log
+     * @param appender where entries are written, or null when disabled
+     */
+    public SlowQueryLog(long thresholdMillis, AsyncRotatingAppender appender) {
+        this.thresholdNanos = thresholdMillis < 0 || appender == null ? -1 : thresholdMillis * 1_000_000;
+        this.appender = appender;
+    }
+
+    /**
+     * Gets the log shared by every service in this JVM, configured from the
+     * zoologia.slowQuery.* system properties on first use
+     * @return the shared log
+     */
+    public static synchronized SlowQueryLog getDefault() {
+        if (defaultLog == null) {
+            long thresholdMillis = Long.getLong("zoologia.slowQuery.thresholdMs", 500);
+            AsyncRotatingAppender appender = null;
+            if (thresholdMillis >= 0) {
+                File logFile = new File(System.getProperty("zoologia.slowQuery.file", "logs/slow_queries.log"));
+                appender = new AsyncRotatingAppender(logFile,
+                        Long.getLong("zoologia.slowQuery.maxBytes", 10 * 1024 * 1024),
+                        Integer.getInteger("zoologia.slowQuery.maxFiles", 5), HEADER, 10_000);
+                System.out.println("Slow queries over " + thresholdMillis + " ms are logged to " + logFile);
+            }
+            defaultLog = new SlowQueryLog(thresholdMillis, appender);
+        }
+        return defaultLog;
+    }
+
+    /**
+     * Checks whether calls are being recorded
+     * @return true if the log has a threshold and a file
+     */
+    public boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    /**
+     * Starts timing a service call on this thread, or joins the call already
+     * running so only the outermost call is logged
+     * @param operation the service method name
+     * @param parameters the call parameters, as replay needs them
+     */
+    public void begin(String operation, String... parameters) {
+        if (!isEnabled()) {
+            return;
+        }
+        Trace trace = currentTrace.get();
+        if (trace == null) {
+            currentTrace.set(new Trace(operation, parameters));
+        } else {
+            trace.depth++;
+        }
+    }
+
+    /**
+     * Records a step of the fallback chain, such as "tiene_propiedad" or "manual"
+     * @param step the name of the step
+     */
+    public void notePath(String step) {
+        Trace trace = currentTrace.get();
+        if (trace != null) {
+            trace.path.add(step);
+        }
+    }
+
+    /**
+     * Records a Prolog goal run by the current call
+     * @param templateText the goal template
+     * @param arguments the bound arguments
+     * @param elapsedNanos how long the goal took
+     * @param outcome "solution", "no_solution", or the reason it stopped, such as "time_limit"
+     */
+    public void noteGoal(String templateText, Object[] arguments, long elapsedNanos, String outcome) {
+        Trace trace = currentTrace.get();
+        if (trace == null) {
+            return;
+        }
+        if (trace.goals.size() < MAX_GOALS_PER_ENTRY) {
+            trace.goals.add(String.format(Locale.ROOT, "%s %s %.2fms %s",
+                    templateText, Arrays.toString(arguments), elapsedNanos / 1e6, outcome));
+        } else {
+            trace.omittedGoals++;
+        }
+    }
+
+    /**
+     * Adds the number of elements in the result list to the last goal recorded
+     * @param solutionCount the list length
+     */
+    public void noteSolutionCount(int solutionCount) {
+        Trace trace = currentTrace.get();
+        if (trace != null && !trace.goals.isEmpty() && trace.omittedGoals == 0) {
+            int last = trace.goals.size() - 1;
+            trace.goals.set(last, trace.goals.get(last) + " (" + solutionCount + " items)");
+        }
+    }
+
+    /**
+     * Ends a service call; the outermost end logs it if it was slow
+     * @param resultCount the number of results returned, or -1 if the call failed
+     * @param status how the call ended under its query budget
+     * @param backend the storage backend of the taxonomy index
+     * @param module the Prolog module of the knowledge base
+     */
+    public void end(int resultCount, QueryBudget.Status status, String backend, String module) {
+        Trace trace = currentTrace.get();
+        if (trace == null) {
+            return;
+        }
+        if (trace.depth > 0) {
+            trace.depth--;
+            return;
+        }
+        currentTrace.remove();
+
+        long elapsedNanos = System.nanoTime() - trace.startNanos;
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        List<String> goals = new ArrayList<>(trace.goals);
+        if (trace.omittedGoals > 0) {
+            goals.add("+" + trace.omittedGoals + " more goals");
+        }
+        Entry entry = new Entry(Instant.now().toString(), elapsedNanos / 1e6, backend, module,
+                trace.operation, status.name(), resultCount, String.join(">", trace.path),
+                String.join("; ", goals), trace.parameters);
+        appender.append(entry.format());
+    }
+
+    /**
+     * Gets the number of entries lost because the writer could not keep up
+     * @return the dropped entry count
+     */
+    public long getDroppedEntries() {
+        return appender != null ? appender.getDroppedLines() : 0;
+    }
+
+    /**
+     * One logged call
+     */
+    public static final class Entry {
+
+        private final String timestamp;
+        private final double latencyMillis;
+        private final String backend;
+        private final String module;
+        private final String operation;
+        private final String status;
+        private final int resultCount;
+        private final String path;
+        private final String goals;
+        private final String[] parameters;
+
+        Entry(String timestamp, double latencyMillis, String backend, String module, String operation,
+              String status, int resultCount, String path, String goals, String[] parameters) {
+            this.timestamp = timestamp;
+            this.latencyMillis = latencyMillis;
+            this.backend = backend;
+            this.module = module;
+            this.operation = operation;
+            this.status = status;
+            this.resultCount = resultCount;
+            this.path = path;
+            this.goals = goals;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Reads an entry from a log line
+         * @param line a line written by format()
+         * @return the entry, or null for the header, blank lines and comments
+         * @throws IllegalArgumentException if the line has too few columns
+         */
+        public static Entry parse(String line) {
+            if (line.isBlank() || line.startsWith("#")) {
+                return null;
+            }
+            String[] columns = line.split("\t", -1);
+            if (columns.length < 9) {
+                throw new IllegalArgumentException("Expected at least 9 columns but found " + columns.length);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = unescape(columns[i]);
+            }
+            return new Entry(columns[0], Double.parseDouble(columns[1]), columns[2], columns[3], columns[4],
+                    columns[5], Integer.parseInt(columns[6]), columns[7], columns[8],
+                    Arrays.copyOfRange(columns, 9, columns.length));
+        }
+
+        /**
+         * Writes the entry as one tab-separated line
+         * @return the log line
+         */
+        public String format() {
+            StringBuilder line = new StringBuilder();
+            line.append(escape(timestamp)).append('\t')
+                .append(String.format(Locale.ROOT, "%.2f", latencyMillis)).append('\t')
+                .append(escape(backend)).append('\t')
+                .append(escape(module)).append('\t')
+                .append(escape(operation)).append('\t')
+                .append(escape(status)).append('\t')
+                .append(resultCount).append('\t')
+                .append(escape(path)).append('\t')
+                .append(escape(goals));
+            for (String parameter : parameters) {
+                line.append('\t').append(escape(parameter));
+            }
+            return line.toString();
+        }
+
+        public String getTimestamp() {
+            return timestamp;
+        }
+
+        public double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public String getBackend() {
+            return backend;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public int getResultCount() {
+            return resultCount;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getGoals() {
+            return goals;
+        }
+
+        public String[] getParameters() {
+            return parameters.clone();
+        }
+    }
+
+    /**
+     * Escapes backslashes, tabs and line breaks so every entry stays on one line
+     */
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private static final class Trace {
+
+        private final String operation;
+        private final String[] parameters;
+        private final long startNanos = System.nanoTime();
+        private final List<String> path = new ArrayList<>();
+        private final List<String> goals = new ArrayList<>();
+        private int omittedGoals;
+        private int depth;
+
+        Trace(String operation, String[] parameters) {
+            this.operation = operation;
+            this.parameters = parameters;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package zoologia;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the calls captured in a slow-query log again, against a chosen
+ * knowledge base and storage backend, and compares the new latencies with
+ * the logged ones. Search results are not cached between runs, so each
+ * run does the full search the slow call did.
+ *
+ * Usage: SlowQueryReplay [--log=logs/slow_queries.log[,more files]]
+ *        [--kb=knowledge_base.pl] [--module=name] [--storage=heap|offheap]
+ *        [--repeat=5] [--warmup=1]
+ * --kb is a file in prolog/ or a path; with --module it is opened as a named
+ * knowledge base instead of being consulted into user.
+ */
+public class SlowQueryReplay {
+
+    private final MusicGenreService musicGenreService;
+    private final int repetitions;
+    private final int warmupRuns;
+    private int lastResultCount;
+
+    /**
+     * Creates a replay tool
+     * @param musicGenreService the service the calls are replayed against
+     * @param repetitions how many timed runs per call
+     * @param warmupRuns how many untimed runs per call before the timed ones
+     */
+    public SlowQueryReplay(MusicGenreService musicGenreService, int repetitions, int warmupRuns) {
+        this.musicGenreService = musicGenreService;
+        this.repetitions = Math.max(1, repetitions);
+        this.warmupRuns = Math.max(0, warmupRuns);
+    }
+
+    /**
+     * Reads the entries of one or more log files, oldest file first as given
+     * @param logFiles the log files
+     * @return the parsed entries; malformed lines are reported and skipped
+     * @throws IOException if a file cannot be read
+     */
+    public static List<SlowQueryLog.Entry> readEntries(List<File> logFiles) throws IOException {
+        List<SlowQueryLog.Entry> entries = new ArrayList<>();
+        for (File logFile : logFiles) {
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8)) {
+                lineNumber++;
+                try {
+                    SlowQueryLog.Entry entry = SlowQueryLog.Entry.parse(line);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println(logFile + ":" + lineNumber + ": skipped, " + e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Replays one logged call
+     * @param entry the logged call
+     * @return the replay timings, or null if the operation is not known
+     */
+    public ReplayResult replay(SlowQueryLog.Entry entry) {
+        Runnable call = createCall(entry);
+        if (call == null) {
+            return null;
+        }
+        for (int i = 0; i < warmupRuns; i++) {
+            musicGenreService.clearSearchResultCache();
+            call.run();
+        }
+
+        long[] latencies = new long[repetitions];
+        QueryBudget.Status worstStatus = QueryBudget.Status.COMPLETE;
+        for (int i = 0; i < repetitions; i++) {
+            musicGenreService.clearSearchResultCache();
+            long startTime = System.nanoTime();
+            call.run();
+            latencies[i] = System.nanoTime() - startTime;
+            QueryBudget.Status status = musicGenreService.getLastCallStatus();
+            if (status.ordinal() > worstStatus.ordinal()) {
+                worstStatus = status;
+            }
+        }
+        Arrays.sort(latencies);
+        return new ReplayResult(entry, latencies, worstStatus, lastResultCount);
+    }
+
+    /**
+     * Maps a logged operation and its parameters back to the service method
+     */
+    private Runnable createCall(SlowQueryLog.Entry entry) {
+        String[] parameters = entry.getParameters();
+        switch (entry.getOperation()) {
+            case "getAllMusicGenres":
+                return () -> lastResultCount = musicGenreService.getAllMusicGenres().length;
+            case "getAllAvailableProperties":
+                return () -> lastResultCount = musicGenreService.getAllAvailableProperties().length;
+            case "getGenreHierarchy":
+                return () -> lastResultCount = musicGenreService.getGenreHierarchy(parameters[0]).length;
+            case "getGenreDescription":
+                return () -> lastResultCount = musicGenreService.getGenreDescription(parameters[0]).isEmpty() ? 0 : 1;
+            case "findGenresWithProperty":
+                return () -> lastResultCount = musicGenreService.findGenresWithProperty(parameters[0]).length;
+            case "findGenresWithMultipleProperties": {
+                String[] properties = Arrays.copyOfRange(parameters, 1, parameters.length);
+                return () -> lastResultCount =
+                    musicGenreService.findGenresWithMultipleProperties(properties, parameters[0]).length;
+            }
+            case "getPropertyFacetCounts": {
+                String[] properties = Arrays.copyOfRange(parameters, 1, parameters.length);
+                return () -> lastResultCount =
+                    musicGenreService.getPropertyFacetCounts(properties, parameters[0]).size();
+            }
+            case "findGenresMatchingExpression": {
+                String subtreeRoot = parameters.length > 1 && !parameters[1].isEmpty() ? parameters[1] : null;
+                return () -> lastResultCount =
+                    musicGenreService.findGenresMatchingExpression(parameters[0], subtreeRoot).length;
+            }
+            case "findGenresByDescription": {
+                int limit = parameters.length > 1 ? Integer.parseInt(parameters[1]) : 20;
+                return () -> lastResultCount = musicGenreService.findGenresByDescription(parameters[0], limit).size();
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Timings of one replayed call next to its logged values
+     */
+    public static final class ReplayResult {
+
+        private final SlowQueryLog.Entry entry;
+        private final long[] sortedLatencies;
+        private final QueryBudget.Status status;
+        private final int resultCount;
+
+        private ReplayResult(SlowQueryLog.Entry entry, long[] sortedLatencies, QueryBudget.Status status,
+                             int resultCount) {
+            this.entry = entry;
+            this.sortedLatencies = sortedLatencies;
+            this.status = status;
+            this.resultCount = resultCount;
+        }
+
+        /**
+         * Gets the median replay latency
+         * @return milliseconds
+         */
+        public double medianMillis() {
+            return sortedLatencies[sortedLatencies.length / 2] / 1e6;
+        }
+
+        /**
+         * Formats the result as a table row
+         * @return the row text
+         */
+        public String format() {
+            String parameters = String.join(" | ", entry.getParameters());
+            if (parameters.length() > 48) {
+                parameters = parameters.substring(0, 45) + "...";
+            }
+            return String.format("%-34s %-48s %9.2f %9.2f %9.2f %9.2f %7s %-24s %s%n",
+                    entry.getOperation(), parameters, entry.getLatencyMillis(),
+                    sortedLatencies[0] / 1e6, medianMillis(), sortedLatencies[sortedLatencies.length - 1] / 1e6,
+                    entry.getResultCount() + "/" + resultCount, status, entry.getPath());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        List<File> logFiles = new ArrayList<>();
+        for (String logFile : options.getOrDefault("log", "logs/slow_queries.log").split(",")) {
+            logFiles.add(new File(logFile.trim()));
+        }
+        String knowledgeBase = options.getOrDefault("kb", "knowledge_base.pl");
+        String module = options.get("module");
+        int repetitions = Integer.parseInt(options.getOrDefault("repeat", "5"));
+        int warmupRuns = Integer.parseInt(options.getOrDefault("warmup", "1"));
+
+        // The backend is read when the index is built, and replays must not log themselves
+        System.setProperty(FrameStorage.STORAGE_PROPERTY, options.getOrDefault("storage", "heap"));
+        if (System.getProperty("zoologia.slowQuery.thresholdMs") == null) {
+            System.setProperty("zoologia.slowQuery.thresholdMs", "-1");
+        }
+
+        List<SlowQueryLog.Entry> entries = readEntries(logFiles);
+
+        // The service logs every query; keep the report readable
+        PrintStream reportOutput = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        MusicGenreService musicGenreService;
+        boolean isPath = Files.exists(Paths.get(knowledgeBase));
+        if (module != null) {
+            KnowledgeBaseRegistry registry = new KnowledgeBaseRegistry();
+            musicGenreService = registry.open(module, isPath ? knowledgeBase : "prolog/" + knowledgeBase);
+        } else {
+            musicGenreService = new MusicGenreService();
+            musicGenreService.loadKnowledgeBase("inference_engine.pl");
+            boolean loaded = isPath ? musicGenreService.loadKnowledgeBaseFile(knowledgeBase)
+                : musicGenreService.loadKnowledgeBase(knowledgeBase);
+            musicGenreService.loadKnowledgeBase("queries.pl");
+            if (!loaded) {
+                musicGenreService = null;
+            }
+        }
+        if (musicGenreService == null) {
+            reportOutput.println("Could not load knowledge base " + knowledgeBase);
+            System.exit(1);
+        }
+        musicGenreService.getTaxonomyIndex();
+
+        reportOutput.println("Replaying " + entries.size() + " calls from " + logFiles + " against "
+                + knowledgeBase + (module != null ? " (module " + module + ")" : "")
+                + " on the " + FrameStorage.fromSystemProperty().getName() + " backend, "
+                + repetitions + " runs each");
+        reportOutput.printf("%-34s %-48s %9s %9s %9s %9s %7s %-24s %s%n", "operation", "parameters",
+                "logged ms", "min ms", "p50 ms", "max ms", "results", "status", "logged path");
+
+        SlowQueryReplay replay = new SlowQueryReplay(musicGenreService, repetitions, warmupRuns);
+        int skipped = 0;
+        for (SlowQueryLog.Entry entry : entries) {
+            ReplayResult result = replay.replay(entry);
+            if (result == null) {
+                skipped++;
+                continue;
+            }
+            reportOutput.print(result.format());
+        }
+        if (skipped > 0) {
+            reportOutput.println(skipped + " entries with unknown operations were skipped");
+        }
+        System.exit(0);
+    }
+}
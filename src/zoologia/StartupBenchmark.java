@@ -0,0 +1,154 @@
+package zoologia;
+
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures startup in fresh JVMs with and without the AppCDS archive and the
+ * service warm-up. Every run starts the application with
+ * -Dzoologia.exitWhenReady=true and reads the startup report it prints, so
+ * the figures are the ones users see: time to first paint, time to
+ * interactive and the latency of the first round of queries, next to the
+ * wall time of the whole process. The slow-query log is off in the runs.
+ *
+ * Usage: StartupBenchmark [--classpath=dist/Zoologia.jar:jpl.jar]
+ *        [--archive=dist/Zoologia.jsa] [--runs=5] [--jvmargs="-Dname=value ..."]
+ * The classpath defaults to this JVM's classpath; configurations that use
+ * the archive are skipped if it does not exist.
+ */
+public class StartupBenchmark {
+
+    /** Wall time, first paint, interactive and first query round */
+    private static final int MEASURE_COUNT = 4;
+
+    private final String classpath;
+    private final List<String> extraJvmArguments;
+    private final int runs;
+
+    /**
+     * Creates a benchmark
+     * @param classpath the classpath of the application JVMs
+     * @param extraJvmArguments arguments added to every JVM, such as java.library.path
+     * @param runs how many JVMs are started per configuration
+     */
+    public StartupBenchmark(String classpath, List<String> extraJvmArguments, int runs) {
+        this.classpath = classpath;
+        this.extraJvmArguments = extraJvmArguments;
+        this.runs = Math.max(1, runs);
+    }
+
+    /**
+     * Starts the application the given number of times and reports the medians
+     * @param configuration the name shown in the report
+     * @param jvmArguments the JVM arguments that define the configuration
+     * @return the report row
+     * @throws Exception if a JVM cannot be started
+     */
+    public String measure(String configuration, List<String> jvmArguments) throws Exception {
+        long[][] samples = new long[MEASURE_COUNT][runs];
+        for (int run = 0; run < runs; run++) {
+            long[] values = startOnce(jvmArguments);
+            for (int measure = 0; measure < MEASURE_COUNT; measure++) {
+                samples[measure][run] = values[measure];
+            }
+        }
+        StringBuilder row = new StringBuilder(String.format("%-20s", configuration));
+        for (long[] measureSamples : samples) {
+            Arrays.sort(measureSamples);
+            row.append(String.format(" %14d", measureSamples[runs / 2]));
+        }
+        return row.toString();
+    }
+
+    /**
+     * Starts one application JVM and waits for it to exit
+     * @return the wall time, first paint, interactive and first query times in milliseconds, -1 where not reported
+     */
+    private long[] startOnce(List<String> jvmArguments) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArguments);
+        command.addAll(extraJvmArguments);
+        command.add("-D" + Zoologia.EXIT_WHEN_READY_PROPERTY + "=true");
+        command.add("-Dzoologia.slowQuery.thresholdMs=-1");
+        command.add("-cp");
+        command.add(classpath);
+        command.add(Zoologia.class.getName());
+
+        long[] values = {-1, -1, -1, -1};
+        long startTime = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith("Time to first paint:")) {
+                    values[1] = parseMillis(line);
+                } else if (line.startsWith("Time to interactive:")) {
+                    values[2] = parseMillis(line);
+                } else if (line.startsWith("First query round:")) {
+                    values[3] = parseMillis(line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        values[0] = (System.nanoTime() - startTime) / 1_000_000;
+        if (exitCode != 0) {
+            System.err.println("Application exited with code " + exitCode + ": " + command);
+        }
+        return values;
+    }
+
+    /**
+     * Reads the number before "ms" in a report line
+     */
+    private static long parseMillis(String line) {
+        String afterLabel = line.substring(line.indexOf(':') + 1).trim();
+        return Long.parseLong(afterLabel.substring(0, afterLabel.indexOf(' ')));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        String classpath = options.getOrDefault("classpath", System.getProperty("java.class.path"));
+        File archive = new File(options.getOrDefault("archive", "dist/Zoologia.jsa"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        List<String> extraJvmArguments = new ArrayList<>();
+        for (String argument : options.getOrDefault("jvmargs", "").trim().split("\\s+")) {
+            if (!argument.isEmpty()) {
+                extraJvmArguments.add(argument);
+            }
+        }
+        if (GraphicsEnvironment.isHeadless()) {
+            extraJvmArguments.add("-Djava.awt.headless=true");
+        }
+
+        String sharedArchive = "-XX:SharedArchiveFile=" + archive.getPath();
+        String warmup = "-D" + ServiceWarmup.ENABLED_PROPERTY + "=true";
+        StartupBenchmark benchmark = new StartupBenchmark(classpath, extraJvmArguments, runs);
+
+        System.out.println("Startup benchmark, median of " + runs + " JVMs per configuration");
+        System.out.printf("%-20s %14s %14s %14s %14s%n", "configuration",
+                "wall ms", "first paint ms", "interactive ms", "first query ms");
+        System.out.println(benchmark.measure("baseline", List.of()));
+        System.out.println(benchmark.measure("warm-up", List.of(warmup)));
+        if (archive.isFile()) {
+            System.out.println(benchmark.measure("appcds", List.of(sharedArchive)));
+            System.out.println(benchmark.measure("appcds + warm-up", List.of(sharedArchive, warmup)));
+        } else {
+            System.out.println("No AppCDS archive at " + archive + "; run 'ant cds-archive' to create it");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package zoologia;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each startup phase takes and on which thread it ran,
+ * plus the two milestones users notice: the first paint of the window and
+ * the moment every list is filled and the window is interactive.
+ * Phases may run concurrently, so every method is thread-safe.
+ */
+public class StartupProfiler {
+
+    private final long startNanos = System.nanoTime();
+    private final long jvmUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    private final List<Phase> phases = new ArrayList<>();
+    private long firstPaintNanos = -1;
+    private long interactiveNanos = -1;
+
+    /**
+     * Runs a phase and records its duration
+     * @param phaseName the name shown in the report
+     * @param work the work of the phase
+     * @param <T> the result type
+     * @return the result of the work
+     */
+    public <T> T time(String phaseName, Supplier<T> work) {
+        Phase phase = beginPhase(phaseName);
+        try {
+            return work.get();
+        } finally {
+            endPhase(phase);
+        }
+    }
+
+    /**
+     * Runs a phase without a result and records its duration
+     * @param phaseName the name shown in the report
+     * @param work the work of the phase
+     */
+    public void run(String phaseName, Runnable work) {
+        Phase phase = beginPhase(phaseName);
+        try {
+            work.run();
+        } finally {
+            endPhase(phase);
+        }
+    }
+
+    /**
+     * Records the first paint of the main window; later calls are ignored
+     */
+    public synchronized void markFirstPaint() {
+        if (firstPaintNanos < 0) {
+            firstPaintNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records the moment the window became fully usable; later calls are ignored
+     * @return true the first time it is called
+     */
+    public synchronized boolean markInteractive() {
+        if (interactiveNanos >= 0) {
+            return false;
+        }
+        interactiveNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Gets the time from the start of startup to the first paint
+     * @return milliseconds, or -1 if the window has not painted yet
+     */
+    public synchronized long getTimeToFirstPaintMillis() {
+        return firstPaintNanos < 0 ? -1 : toMillis(firstPaintNanos);
+    }
+
+    /**
+     * Gets the time from the start of startup until the window was interactive
+     * @return milliseconds, or -1 if startup has not finished
+     */
+    public synchronized long getTimeToInteractiveMillis() {
+        return interactiveNanos < 0 ? -1 : toMillis(interactiveNanos);
+    }
+
+    /**
+     * Formats the phases in start order with their offsets and durations
+     * @return the startup report
+     */
+    public synchronized String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("=== STARTUP REPORT ===\n");
+        report.append(String.format("JVM start to main:     %6d ms%n", jvmUptimeMillis));
+        phases.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        for (Phase phase : phases) {
+            long end = phase.endNanos < 0 ? System.nanoTime() : phase.endNanos;
+            report.append(String.format("[%6d .. %6d ms] %6d ms  %-32s %s%s%n",
+                    toMillis(phase.startNanos), toMillis(end), (end - phase.startNanos) / 1_000_000,
+                    phase.name, phase.threadName, phase.endNanos < 0 ? " (running)" : ""));
+        }
+        report.append(String.format("Time to first paint:   %6d ms%n", getTimeToFirstPaintMillis()));
+        report.append(String.format("Time to interactive:   %6d ms", getTimeToInteractiveMillis()));
+        return report.toString();
+    }
+
+    private synchronized Phase beginPhase(String phaseName) {
+        Phase phase = new Phase(phaseName, Thread.currentThread().getName(), System.nanoTime());
+        phases.add(phase);
+        return phase;
+    }
+
+    private synchronized void endPhase(Phase phase) {
+        phase.endNanos = System.nanoTime();
+    }
+
+    private long toMillis(long nanos) {
+        return (nanos - startNanos) / 1_000_000;
+    }
+
+    private static final class Phase {
+
+        private final String name;
+        private final String threadName;
+        private final long startNanos;
+        private long endNanos = -1;
+
+        Phase(String name, String threadName, long startNanos) {
+            this.name = name;
+            this.threadName = threadName;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package zoologia;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates frame/4 knowledge bases of arbitrary size for load tests and
+ * benchmarks. Property values follow a skewed distribution, like the real
+ * KB where a few values are very common and most are rare.
+ */
+public class SyntheticKnowledgeBase {
+
+    private static final String[] FUNCTORS = {
+        "usa", "origen_pais", "origen_decada", "caracteristica", "energia",
+        "complejidad", "estructura", "influencia", "cultura", "funcion"
+    };
+
+    private static final String[] DESCRIPTION_WORDS = {
+        "ritmo", "melodia", "armonia", "improvisacion", "baile", "urbano", "electronico",
+        "tradicional", "afroamericano", "experimental", "guitarra", "sintetizador",
+        "voz", "percusion", "fusion", "popular", "underground", "comercial", "lento", "rapido"
+    };
+
+    private final int genreCount;
+    private final int propertiesPerGenre;
+    private final int valuesPerFunctor;
+    private final int maxChildren;
+    private final long seed;
+
+    /**
+     * Creates a generator
+     * @param genreCount the number of frames, including the root
+     * @param propertiesPerGenre the number of direct properties of each frame
+     * @param maxChildren the maximum number of children per frame, 1 gives a single chain
+     * @param seed the random seed, so the same KB can be generated again
+     */
+    public SyntheticKnowledgeBase(int genreCount, int propertiesPerGenre, int maxChildren, long seed) {
+        this.genreCount = genreCount;
+        this.propertiesPerGenre = propertiesPerGenre;
+        this.valuesPerFunctor = Math.max(4, (int) Math.sqrt(genreCount));
+        this.maxChildren = Math.max(1, maxChildren);
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the name of a generated genre
+     * @param index the position of the genre, 0 is the root
+     * @return the genre name
+     */
+    public String genreName(int index) {
+        return index == 0 ? "musica" : "genero_" + index;
+    }
+
+    /**
+     * Gets a property that appears in the generated KB, more common for low ranks
+     * @param random the random source
+     * @return the Prolog text of the property
+     */
+    public String randomProperty(Random random) {
+        String functor = FUNCTORS[random.nextInt(FUNCTORS.length)];
+        return functor + "(" + functor + "_" + skewedValue(random) + ")";
+    }
+
+    /**
+     * Generates the frames of the knowledge base in memory
+     * @return the frames, the root first, in the order they are written
+     */
+    public List<TaxonomyIndex.Frame> frames() {
+        Random random = new Random(seed);
+        int[] childCounts = new int[Math.max(1, genreCount)];
+        List<TaxonomyIndex.Frame> frames = new ArrayList<>(Math.max(1, genreCount));
+        frames.add(new TaxonomyIndex.Frame(genreName(0), TaxonomyIndex.ROOT_NAME,
+            new String[]{"es_arte(true)", "necesita(sonido)", "tiene(ritmo)", "tiene(melodia)"},
+            "Raiz sintetica de la taxonomia"));
+
+        int parentIndex = 0;
+        for (int index = 1; index < genreCount; index++) {
+            // Breadth-first filling gives a complete tree with the requested fan-out
+            while (childCounts[parentIndex] >= maxChildren) {
+                parentIndex++;
+            }
+            childCounts[parentIndex]++;
+
+            String[] properties = new String[propertiesPerGenre];
+            for (int p = 0; p < propertiesPerGenre; p++) {
+                properties[p] = randomProperty(random);
+            }
+            StringBuilder description = new StringBuilder();
+            for (int w = 0; w < 8; w++) {
+                if (w > 0) description.append(' ');
+                description.append(DESCRIPTION_WORDS[random.nextInt(DESCRIPTION_WORDS.length)]);
+            }
+            frames.add(new TaxonomyIndex.Frame(genreName(index), genreName(parentIndex),
+                properties, description.toString()));
+        }
+        return frames;
+    }
+
+    /**
+     * Writes the knowledge base to a Prolog file
+     * @param outputFile the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path outputFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+            writer.write("% Base de conocimiento sintetica generada para pruebas de carga\n");
+            for (TaxonomyIndex.Frame frame : frames()) {
+                writer.write("frame(");
+                writer.write(frame.getName());
+                writer.write(", subclase_de(");
+                writer.write(frame.getParent());
+                writer.write("),\n    [");
+                writer.write(String.join(", ", frame.getProperties()));
+                writer.write("],\n    '");
+                writer.write(frame.getDescription());
+                writer.write("').\n");
+            }
+        }
+    }
+
+    /**
+     * Picks a value index with a roughly Zipfian distribution
+     */
+    private int skewedValue(Random random) {
+        return (int) Math.floor(Math.pow(valuesPerFunctor, random.nextDouble())) - 1;
+    }
+}
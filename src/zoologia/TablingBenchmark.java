@@ -0,0 +1,82 @@
+package zoologia;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.jpl7.Term;
+
+/**
+ * Compares the recursive inference rules with and without tabling on a
+ * synthetic knowledge base. Each workload of prolog/benchmark_tablas.pl
+ * runs once with the plain recursive rules, once with empty tables and once
+ * with the tables already filled, and the number of distinct answers of the
+ * plain and tabled runs is checked to be the same. The default knowledge
+ * base is a single chain, the deepest hierarchy the generator can build.
+ *
+ * Usage: TablingBenchmark [--genres=2000] [--fanout=1] [--properties=3] [--seed=1]
+ */
+public class TablingBenchmark {
+
+    private static final String[] WORKLOADS = {
+        "clases_con_propiedad", "todas_las_propiedades", "subgeneros_de", "jerarquias", "clases_por_coincidencias"
+    };
+
+    private static final PreparedQuery COMPARE_TABLING = new PreparedQuery(
+        "comparar_tablas(Workload, Untabled, EmptyTables, FilledTables, Results)", "Workload");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int genreCount = Integer.parseInt(options.getOrDefault("genres", "2000"));
+        int fanout = Integer.parseInt(options.getOrDefault("fanout", "1"));
+        int propertiesPerGenre = Integer.parseInt(options.getOrDefault("properties", "3"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        // The service logs every query; keep the report readable
+        PrintStream reportOutput = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        MusicGenreService musicGenreService = new MusicGenreService();
+        musicGenreService.loadKnowledgeBase("inference_engine.pl");
+        Path syntheticFile = Files.createTempFile("synthetic_kb_", ".pl");
+        SyntheticKnowledgeBase generator = new SyntheticKnowledgeBase(genreCount, propertiesPerGenre, fanout, seed);
+        generator.write(syntheticFile);
+        musicGenreService.loadKnowledgeBaseFile(syntheticFile.toString());
+        syntheticFile.toFile().deleteOnExit();
+        musicGenreService.loadKnowledgeBase("queries.pl");
+        if (!musicGenreService.loadKnowledgeBase("benchmark_tablas.pl")) {
+            reportOutput.println("Could not load prolog/benchmark_tablas.pl");
+            System.exit(1);
+        }
+
+        // Genres are generated breadth first, so the last one is the deepest
+        int deepestId = musicGenreService.getTaxonomyIndex().idOf(generator.genreName(genreCount - 1));
+        reportOutput.println("Tabling benchmark: " + genreCount + " genres, fan-out " + fanout
+                + ", " + propertiesPerGenre + " properties per genre, depth "
+                + musicGenreService.getAncestorTable().depthOf(deepestId));
+        reportOutput.printf("%-26s %12s %12s %12s %9s %12s%n", "workload",
+                "plain ms", "tabled ms", "reused ms", "speedup", "answers");
+        for (String workload : WORKLOADS) {
+            Map<String, Term> solution = COMPARE_TABLING.bindIn(musicGenreService.getKnowledgeBaseModule(),
+                    PreparedQuery.atom(workload)).oneSolution();
+            if (solution == null) {
+                reportOutput.printf("%-26s failed%n", workload);
+                continue;
+            }
+            long untabledMillis = solution.get("Untabled").longValue();
+            long emptyTablesMillis = solution.get("EmptyTables").longValue();
+            long filledTablesMillis = solution.get("FilledTables").longValue();
+            reportOutput.printf("%-26s %12d %12d %12d %8.1fx %12s%n", workload,
+                    untabledMillis, emptyTablesMillis, filledTablesMillis,
+                    (double) untabledMillis / Math.max(1, emptyTablesMillis), solution.get("Results"));
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,339 @@
+package zoologia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the taxonomy to files for analytics pipelines. Every format is
+ * dictionary encoded: genres and properties are written once with their ids
+ * and all relations refer to those ids. Output goes through a fixed-size
+ * buffer into a FileChannel, so memory use does not grow with the KB.
+ */
+public class TaxonomyExporter {
+
+    /**
+     * Supported export formats
+     */
+    public enum ExportFormat {
+        /** One CSV file per table: genres, properties, edges and genre_properties */
+        CSV,
+        /** A single taxonomy.ndjson file with one JSON object per line */
+        NDJSON,
+        /** A single taxonomy.bin file with varint-encoded ids */
+        BINARY
+    }
+
+    /** Magic number at the start of the binary format ("MTAX") */
+    public static final int BINARY_MAGIC = 0x4D544158;
+
+    /** Version of the binary format layout */
+    public static final int BINARY_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TaxonomyIndex taxonomyIndex;
+
+    /**
+     * Creates an exporter for the given index
+     * @param taxonomyIndex the taxonomy to export
+     */
+    public TaxonomyExporter(TaxonomyIndex taxonomyIndex) {
+        this.taxonomyIndex = taxonomyIndex;
+    }
+
+    /**
+     * Writes the taxonomy in the requested format
+     * @param outputDirectory the directory that receives the exported files
+     * @param format the output format
+     * @throws IOException if a file cannot be written
+     */
+    public void export(Path outputDirectory, ExportFormat format) throws IOException {
+        Files.createDirectories(outputDirectory);
+        switch (format) {
+            case CSV:
+                exportCsv(outputDirectory);
+                break;
+            case NDJSON:
+                exportNdjson(outputDirectory.resolve("taxonomy.ndjson"));
+                break;
+            case BINARY:
+                exportBinary(outputDirectory.resolve("taxonomy.bin"));
+                break;
+        }
+    }
+
+    /**
+     * Writes genres.csv, properties.csv, edges.csv and genre_properties.csv
+     */
+    private void exportCsv(Path outputDirectory) throws IOException {
+        try (ChannelWriter writer = new ChannelWriter(outputDirectory.resolve("genres.csv"))) {
+            writer.writeText("genre_id,name,parent_id,description\n");
+            for (int genreId = 0; genreId < taxonomyIndex.size(); genreId++) {
+                writer.writeInt(genreId).writeText(",")
+                      .writeText(csvField(taxonomyIndex.nameOf(genreId))).writeText(",")
+                      .writeInt(taxonomyIndex.parentOf(genreId)).writeText(",")
+                      .writeText(csvField(taxonomyIndex.descriptionOf(genreId))).writeText("\n");
+            }
+        }
+
+        try (ChannelWriter writer = new ChannelWriter(outputDirectory.resolve("properties.csv"))) {
+            writer.writeText("property_id,functor,value,term\n");
+            for (int propertyId = 0; propertyId < taxonomyIndex.propertyCount(); propertyId++) {
+                writer.writeInt(propertyId).writeText(",")
+                      .writeText(csvField(taxonomyIndex.propertyFunctorOf(propertyId))).writeText(",")
+                      .writeText(csvField(taxonomyIndex.propertyValueOf(propertyId))).writeText(",")
+                      .writeText(csvField(taxonomyIndex.propertyNameOf(propertyId))).writeText("\n");
+            }
+        }
+
+        try (ChannelWriter writer = new ChannelWriter(outputDirectory.resolve("edges.csv"))) {
+            writer.writeText("child_id,parent_id\n");
+            for (int genreId = 0; genreId < taxonomyIndex.size(); genreId++) {
+                if (taxonomyIndex.parentOf(genreId) != TaxonomyIndex.NO_PARENT) {
+                    writer.writeInt(genreId).writeText(",")
+                          .writeInt(taxonomyIndex.parentOf(genreId)).writeText("\n");
+                }
+            }
+        }
+
+        try (ChannelWriter writer = new ChannelWriter(outputDirectory.resolve("genre_properties.csv"))) {
+            writer.writeText("genre_id,property_id,inherited\n");
+            for (int genreId = 0; genreId < taxonomyIndex.size(); genreId++) {
+                for (int propertyId : taxonomyIndex.inheritedPropertyIds(genreId)) {
+                    writer.writeInt(genreId).writeText(",")
+                          .writeInt(propertyId).writeText(",")
+                          .writeText(isDirectProperty(genreId, propertyId) ? "0" : "1").writeText("\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the property dictionary followed by one line per genre
+     */
+    private void exportNdjson(Path outputFile) throws IOException {
+        try (ChannelWriter writer = new ChannelWriter(outputFile)) {
+            for (int propertyId = 0; propertyId < taxonomyIndex.propertyCount(); propertyId++) {
+                writer.writeText("{\"type\":\"property\",\"id\":").writeInt(propertyId)
+                      .writeText(",\"functor\":").writeText(jsonString(taxonomyIndex.propertyFunctorOf(propertyId)))
+                      .writeText(",\"value\":").writeText(jsonString(taxonomyIndex.propertyValueOf(propertyId)))
+                      .writeText(",\"term\":").writeText(jsonString(taxonomyIndex.propertyNameOf(propertyId)))
+                      .writeText("}\n");
+            }
+
+            for (int genreId = 0; genreId < taxonomyIndex.size(); genreId++) {
+                writer.writeText("{\"type\":\"genre\",\"id\":").writeInt(genreId)
+                      .writeText(",\"name\":").writeText(jsonString(taxonomyIndex.nameOf(genreId)))
+                      .writeText(",\"parent\":").writeInt(taxonomyIndex.parentOf(genreId))
+                      .writeText(",\"properties\":[");
+                for (int i = 0; i < taxonomyIndex.directPropertyCount(genreId); i++) {
+                    if (i > 0) writer.writeText(",");
+                    writer.writeInt(taxonomyIndex.directPropertyAt(genreId, i));
+                }
+                writer.writeText("],\"inherited\":[");
+                boolean first = true;
+                for (int propertyId : taxonomyIndex.inheritedPropertyIds(genreId)) {
+                    if (!isDirectProperty(genreId, propertyId)) {
+                        if (!first) writer.writeText(",");
+                        writer.writeInt(propertyId);
+                        first = false;
+                    }
+                }
+                writer.writeText("],\"description\":").writeText(jsonString(taxonomyIndex.descriptionOf(genreId)))
+                      .writeText("}\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the binary format: header, string dictionaries, then per genre the
+     * parent id, direct property ids and inherited property ids. Ids are
+     * unsigned varints and parent ids are shifted by one so NO_PARENT is 0.
+     */
+    private void exportBinary(Path outputFile) throws IOException {
+        try (ChannelWriter writer = new ChannelWriter(outputFile)) {
+            writer.writeFixedInt(BINARY_MAGIC);
+            writer.writeFixedInt(BINARY_VERSION);
+            writer.writeVarint(taxonomyIndex.size());
+            writer.writeVarint(taxonomyIndex.propertyCount());
+
+            for (int propertyId = 0; propertyId < taxonomyIndex.propertyCount(); propertyId++) {
+                writer.writeLengthPrefixed(taxonomyIndex.propertyNameOf(propertyId));
+            }
+            for (int genreId = 0; genreId < taxonomyIndex.size(); genreId++) {
+                writer.writeLengthPrefixed(taxonomyIndex.nameOf(genreId));
+                writer.writeLengthPrefixed(taxonomyIndex.descriptionOf(genreId));
+            }
+
+            for (int genreId = 0; genreId < taxonomyIndex.size(); genreId++) {
+                writer.writeVarint(taxonomyIndex.parentOf(genreId) + 1);
+
+                int directCount = taxonomyIndex.directPropertyCount(genreId);
+                writer.writeVarint(directCount);
+                for (int i = 0; i < directCount; i++) {
+                    writer.writeVarint(taxonomyIndex.directPropertyAt(genreId, i));
+                }
+
+                int[] inheritedProperties = taxonomyIndex.inheritedPropertyIds(genreId);
+                writer.writeVarint(inheritedProperties.length);
+                for (int propertyId : inheritedProperties) {
+                    writer.writeVarint(propertyId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a property is written in the genre's own frame
+     */
+    private boolean isDirectProperty(int genreId, int propertyId) {
+        for (int i = 0; i < taxonomyIndex.directPropertyCount(genreId); i++) {
+            if (taxonomyIndex.directPropertyAt(genreId, i) == propertyId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Quotes a CSV field when it contains separators or quotes
+     */
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Encodes a value as a JSON string literal
+     */
+    private static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Buffered writer over a FileChannel. The buffer is flushed whenever it
+     * fills up, so each file is written with a constant amount of memory.
+     */
+    private static final class ChannelWriter implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelWriter(Path outputFile) throws IOException {
+            this.channel = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        ChannelWriter writeText(String text) throws IOException {
+            return writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        ChannelWriter writeInt(int value) throws IOException {
+            return writeText(Integer.toString(value));
+        }
+
+        ChannelWriter writeFixedInt(int value) throws IOException {
+            ensureCapacity(4);
+            buffer.putInt(value);
+            return this;
+        }
+
+        ChannelWriter writeVarint(int value) throws IOException {
+            ensureCapacity(5);
+            int remaining = value;
+            while ((remaining & ~0x7F) != 0) {
+                buffer.put((byte) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            buffer.put((byte) remaining);
+            return this;
+        }
+
+        ChannelWriter writeLengthPrefixed(String text) throws IOException {
+            byte[] bytes = (text != null ? text : "").getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            return writeBytes(bytes);
+        }
+
+        private ChannelWriter writeBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            return this;
+        }
+
+        private void ensureCapacity(int byteCount) throws IOException {
+            if (buffer.remaining() < byteCount) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Command line entry point for scheduled exports.
+     * Usage: TaxonomyExporter &lt;csv|ndjson|binary&gt; &lt;output-directory&gt;
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: TaxonomyExporter <csv|ndjson|binary> <output-directory>");
+            System.exit(1);
+        }
+
+        MusicGenreService musicGenreService = new MusicGenreService();
+        musicGenreService.loadKnowledgeBase("inference_engine.pl");
+        musicGenreService.loadKnowledgeBase("knowledge_base.pl");
+        musicGenreService.loadKnowledgeBase("queries.pl");
+
+        ExportFormat format = ExportFormat.valueOf(args[0].toUpperCase());
+        boolean success = musicGenreService.exportTaxonomy(Paths.get(args[1]), format);
+        System.exit(success ? 0 : 1);
+    }
+}
@@ -0,0 +1,607 @@
+package zoologia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import zoologia.FrameStorage.IntColumn;
+import zoologia.FrameStorage.StringColumn;
+
+/**
+ * In-memory index of the frame hierarchy defined by the subclase_de relations.
+ * Genres are numbered by sorted name and children and direct properties
+ * are stored in compact offset arrays, so the frames can be walked without
+ * querying Prolog again. The arrays live in the columns of a FrameStorage
+ * backend, on or off the heap. The index keeps no posting lists; the
+ * genres of each property are held only as the heap bitmaps of
+ * MusicGenreService, built from directPropertyAt.
+ *
+ * The tree is also numbered in depth-first preorder. Every subtree is then a
+ * contiguous range of preorder positions, which makes ancestor checks O(1)
+ * and lets a set of preorder positions be restricted to a subtree with a
+ * range intersection.
+ *
+ * Building the index also validates the frames in linear time: frames
+ * defined more than once, parents that are not defined and subclase_de
+ * cycles are reported by validationErrors(). A broken frame never makes a
+ * traversal loop: each cycle is cut at one of its frames, which is placed
+ * at the top level with the rest of the cycle below it, and frames with an
+ * undefined parent are top-level too. Parents, children, the preorder and
+ * every walk up the hierarchy all follow this one tree.
+ */
+public class TaxonomyIndex {
+
+    /** Name of the virtual root that every top-level frame points to */
+    public static final String ROOT_NAME = "top";
+
+    /** Parent id used for frames that hang directly from the virtual root */
+    public static final int NO_PARENT = -1;
+
+    private final StringColumn genreNames;
+    private final IntColumn parentIds;
+    private final IntColumn childOffsets;
+    private final IntColumn childIds;
+    private final IntColumn rootIds;
+    private final StringColumn descriptions;
+    private final StringColumn propertyNames;
+    private final IntColumn propertyOffsets;
+    private final IntColumn directPropertyIds;
+    private final IntColumn preorderPositions;
+    private final IntColumn subtreeEnds;
+    private final IntColumn preorderGenreIds;
+    private final List<String> validationErrors;
+
+    /**
+     * Builds the index from the frames read from the knowledge base, using
+     * the storage backend selected by the zoologia.storage system property
+     * @param frames every frame in the knowledge base
+     */
+    public TaxonomyIndex(List<Frame> frames) {
+        this(frames, FrameStorage.fromSystemProperty());
+    }
+
+    /**
+     * Builds the index from the frames read from the knowledge base
+     * @param frames every frame in the knowledge base
+     * @param storage the backend that holds the index columns
+     */
+    public TaxonomyIndex(List<Frame> frames, FrameStorage storage) {
+        String[] sortedNames = new String[frames.size()];
+        for (int i = 0; i < sortedNames.length; i++) {
+            sortedNames[i] = frames.get(i).name;
+        }
+        Arrays.sort(sortedNames);
+
+        List<String> errors = new ArrayList<>();
+        Map<String, Integer> genreIds = new HashMap<>(sortedNames.length * 2);
+        List<String> uniqueNames = new ArrayList<>(sortedNames.length);
+        for (int i = 0; i < sortedNames.length; i++) {
+            String name = sortedNames[i];
+            if (!genreIds.containsKey(name)) {
+                genreIds.put(name, uniqueNames.size());
+                uniqueNames.add(name);
+            } else if (i < 2 || !name.equals(sortedNames[i - 2])) {
+                // Sorted names put the copies together; report each duplicated frame once
+                int copies = 2;
+                while (i + copies - 1 < sortedNames.length && name.equals(sortedNames[i + copies - 1])) {
+                    copies++;
+                }
+                errors.add("Frame " + name + " is defined " + copies + " times; the last definition is used");
+            }
+        }
+
+        int genreCount = uniqueNames.size();
+        int[] parentIds = new int[genreCount];
+        String[] descriptions = new String[genreCount];
+        Frame[] framesById = new Frame[genreCount];
+        Arrays.fill(parentIds, NO_PARENT);
+        for (Frame frame : frames) {
+            int genreId = genreIds.get(frame.name);
+            Integer parentId = genreIds.get(frame.parent);
+            parentIds[genreId] = parentId != null ? parentId : NO_PARENT;
+            if (parentId == null && !ROOT_NAME.equals(frame.parent)) {
+                errors.add("Frame " + frame.name + " is a subclass of " + frame.parent
+                        + ", which is not defined; it is shown at the top level");
+            }
+            descriptions[genreId] = frame.description;
+            framesById[genreId] = frame;
+        }
+
+        breakCycles(uniqueNames, parentIds, errors);
+
+        // Counting sort by parent keeps every child run ordered by id (and therefore by name)
+        int[] childOffsets = new int[genreCount + 1];
+        int rootCount = 0;
+        for (int id = 0; id < genreCount; id++) {
+            if (parentIds[id] == NO_PARENT) {
+                rootCount++;
+            } else {
+                childOffsets[parentIds[id] + 1]++;
+            }
+        }
+        for (int id = 0; id < genreCount; id++) {
+            childOffsets[id + 1] += childOffsets[id];
+        }
+
+        int[] childIds = new int[genreCount - rootCount];
+        int[] rootIds = new int[rootCount];
+        int[] fillPositions = Arrays.copyOf(childOffsets, genreCount);
+        int rootPosition = 0;
+        for (int id = 0; id < genreCount; id++) {
+            int parentId = parentIds[id];
+            if (parentId == NO_PARENT) {
+                rootIds[rootPosition++] = id;
+            } else {
+                childIds[fillPositions[parentId]++] = id;
+            }
+        }
+
+        // Property dictionary, also numbered by sorted name
+        Map<String, Integer> distinctProperties = new HashMap<>();
+        for (Frame frame : framesById) {
+            for (String property : frame.properties) {
+                distinctProperties.put(property, 0);
+            }
+        }
+        String[] propertyNames = distinctProperties.keySet().toArray(new String[0]);
+        Arrays.sort(propertyNames);
+        Map<String, Integer> propertyIds = new HashMap<>(propertyNames.length * 2);
+        for (int i = 0; i < propertyNames.length; i++) {
+            // Knowledge bases loaded side by side mostly share their vocabulary, so keep one copy of each name
+            propertyNames[i] = propertyNames[i].intern();
+            propertyIds.put(propertyNames[i], i);
+        }
+
+        int[] propertyOffsets = new int[genreCount + 1];
+        List<Integer> propertyRun = new ArrayList<>();
+        int[] allDirectProperties = new int[16];
+        int propertyTotal = 0;
+        for (int id = 0; id < genreCount; id++) {
+            propertyRun.clear();
+            for (String property : framesById[id].properties) {
+                int propertyId = propertyIds.get(property);
+                if (!propertyRun.contains(propertyId)) {
+                    propertyRun.add(propertyId);
+                }
+            }
+            if (propertyTotal + propertyRun.size() > allDirectProperties.length) {
+                allDirectProperties = Arrays.copyOf(allDirectProperties,
+                        Math.max(allDirectProperties.length * 2, propertyTotal + propertyRun.size()));
+            }
+            for (int propertyId : propertyRun) {
+                allDirectProperties[propertyTotal++] = propertyId;
+            }
+            Arrays.sort(allDirectProperties, propertyOffsets[id], propertyTotal);
+            propertyOffsets[id + 1] = propertyTotal;
+        }
+        int[] directPropertyIds = Arrays.copyOf(allDirectProperties, propertyTotal);
+
+        // Euler tour: each genre gets its preorder position and the position where its subtree ends
+        int[] preorderPositions = new int[genreCount];
+        int[] subtreeEnds = new int[genreCount];
+        int[] preorderGenreIds = new int[genreCount];
+        Arrays.fill(preorderPositions, -1);
+        int[] stack = new int[genreCount];
+        int[] stackChildPositions = new int[genreCount];
+        int nextPosition = 0;
+        for (int startId : rootIds) {
+            preorderPositions[startId] = nextPosition;
+            preorderGenreIds[nextPosition++] = startId;
+            stack[0] = startId;
+            stackChildPositions[0] = childOffsets[startId];
+            int depth = 1;
+            while (depth > 0) {
+                int currentId = stack[depth - 1];
+                if (stackChildPositions[depth - 1] < childOffsets[currentId + 1]) {
+                    int childId = childIds[stackChildPositions[depth - 1]++];
+                    preorderPositions[childId] = nextPosition;
+                    preorderGenreIds[nextPosition++] = childId;
+                    stack[depth] = childId;
+                    stackChildPositions[depth] = childOffsets[childId];
+                    depth++;
+                } else {
+                    subtreeEnds[currentId] = nextPosition;
+                    depth--;
+                }
+            }
+        }
+
+        this.genreNames = storage.stringColumn(uniqueNames.toArray(new String[0]), true);
+        this.parentIds = storage.intColumn(parentIds);
+        this.childOffsets = storage.intColumn(childOffsets);
+        this.childIds = storage.intColumn(childIds);
+        this.rootIds = storage.intColumn(rootIds);
+        this.descriptions = storage.stringColumn(descriptions, false);
+        this.propertyNames = storage.stringColumn(propertyNames, true);
+        this.propertyOffsets = storage.intColumn(propertyOffsets);
+        this.directPropertyIds = storage.intColumn(directPropertyIds);
+        this.preorderPositions = storage.intColumn(preorderPositions);
+        this.subtreeEnds = storage.intColumn(subtreeEnds);
+        this.preorderGenreIds = storage.intColumn(preorderGenreIds);
+        this.validationErrors = List.copyOf(errors);
+    }
+
+    /**
+     * Finds the subclase_de cycles in linear time and cuts each one. Each
+     * walk up the parent chain stops at a genre already walked; if that genre
+     * was reached in the same walk, the chain from it back to itself is a
+     * cycle, and the genre becomes top-level so the rest of the cycle and its
+     * subgenres hang below it.
+     */
+    private static void breakCycles(List<String> names, int[] parentIds, List<String> errors) {
+        int[] walkNumbers = new int[parentIds.length];
+        for (int startId = 0; startId < parentIds.length; startId++) {
+            int walkNumber = startId + 1;
+            int currentId = startId;
+            while (currentId != NO_PARENT && walkNumbers[currentId] == 0) {
+                walkNumbers[currentId] = walkNumber;
+                currentId = parentIds[currentId];
+            }
+            if (currentId == NO_PARENT || walkNumbers[currentId] != walkNumber) {
+                continue;
+            }
+            StringBuilder cycle = new StringBuilder(names.get(currentId));
+            for (int cycleId = parentIds[currentId]; ; cycleId = parentIds[cycleId]) {
+                cycle.append(" -> ").append(names.get(cycleId));
+                if (cycleId == currentId) break;
+            }
+            errors.add("Frames form a subclase_de cycle: " + cycle + "; " + names.get(currentId)
+                    + (parentIds[currentId] == currentId ? " is its own parent and is shown at the top level"
+                            : " is shown at the top level with the rest of the cycle below it"));
+            parentIds[currentId] = NO_PARENT;
+        }
+    }
+
+    /**
+     * Gets the problems found in the frames when the index was built
+     * @return one message per duplicated frame, undefined parent and cycle; empty if the frames are consistent
+     */
+    public List<String> validationErrors() {
+        return validationErrors;
+    }
+
+    /**
+     * Gets the number of genres in the index
+     * @return the genre count
+     */
+    public int size() {
+        return genreNames.length();
+    }
+
+    /**
+     * Gets the name of a genre
+     * @param genreId the id of the genre
+     * @return the genre name
+     */
+    public String nameOf(int genreId) {
+        return genreNames.get(genreId);
+    }
+
+    /**
+     * Looks up the id of a genre
+     * @param genreName the name of the genre
+     * @return the genre id, or -1 if the genre is unknown
+     */
+    public int idOf(String genreName) {
+        return genreNames.indexOf(genreName);
+    }
+
+    /**
+     * Gets the parent of a genre
+     * @param genreId the id of the genre
+     * @return the parent id, or NO_PARENT for top-level genres, including those whose
+     *         parent is undefined and the frame where a subclase_de cycle was cut
+     */
+    public int parentOf(int genreId) {
+        return parentIds.get(genreId);
+    }
+
+    /**
+     * Gets the description text of a genre
+     * @param genreId the id of the genre
+     * @return the description, as written in the frame
+     */
+    public String descriptionOf(int genreId) {
+        return descriptions.get(genreId);
+    }
+
+    /**
+     * Gets the number of distinct properties written in any frame
+     * @return the property count
+     */
+    public int propertyCount() {
+        return propertyNames.length();
+    }
+
+    /**
+     * Gets the Prolog text of a property, for example usa(bateria)
+     * @param propertyId the id of the property
+     * @return the property text
+     */
+    public String propertyNameOf(int propertyId) {
+        return propertyNames.get(propertyId);
+    }
+
+    /**
+     * Looks up the id of a property
+     * @param propertyName the Prolog text of the property
+     * @return the property id, or -1 if no frame has this property
+     */
+    public int propertyIdOf(String propertyName) {
+        return propertyNames.indexOf(propertyName);
+    }
+
+    /**
+     * Gets the functor of a property, for example usa for usa(bateria)
+     * @param propertyId the id of the property
+     * @return the property functor
+     */
+    public String propertyFunctorOf(int propertyId) {
+        String propertyName = propertyNames.get(propertyId);
+        int openIndex = propertyName.indexOf('(');
+        return openIndex > 0 ? propertyName.substring(0, openIndex) : propertyName;
+    }
+
+    /**
+     * Gets the argument text of a property, for example bateria for usa(bateria)
+     * @param propertyId the id of the property
+     * @return the property value, or an empty string for atomic properties
+     */
+    public String propertyValueOf(int propertyId) {
+        String propertyName = propertyNames.get(propertyId);
+        int openIndex = propertyName.indexOf('(');
+        if (openIndex < 0 || !propertyName.endsWith(")")) {
+            return "";
+        }
+        return propertyName.substring(openIndex + 1, propertyName.length() - 1);
+    }
+
+    /**
+     * Gets the number of properties written directly in a frame
+     * @param genreId the id of the genre
+     * @return the direct property count
+     */
+    public int directPropertyCount(int genreId) {
+        return propertyOffsets.get(genreId + 1) - propertyOffsets.get(genreId);
+    }
+
+    /**
+     * Gets a property written directly in a frame
+     * @param genreId the id of the genre
+     * @param position the position of the property, ordered by id
+     * @return the property id
+     */
+    public int directPropertyAt(int genreId, int position) {
+        return directPropertyIds.get(propertyOffsets.get(genreId) + position);
+    }
+
+    /**
+     * Gets every property of a genre including the inherited ones, like todas_las_propiedades/2
+     * @param genreId the id of the genre
+     * @return the sorted, distinct property ids
+     */
+    public int[] inheritedPropertyIds(int genreId) {
+        int[] ancestry = pathFromRoot(genreId);
+        int totalCount = 0;
+        for (int ancestorId : ancestry) {
+            totalCount += directPropertyCount(ancestorId);
+        }
+
+        int[] collected = new int[totalCount];
+        int position = 0;
+        for (int ancestorId : ancestry) {
+            int end = propertyOffsets.get(ancestorId + 1);
+            for (int p = propertyOffsets.get(ancestorId); p < end; p++) {
+                collected[position++] = directPropertyIds.get(p);
+            }
+        }
+        Arrays.sort(collected);
+
+        int distinctCount = 0;
+        for (int i = 0; i < collected.length; i++) {
+            if (i == 0 || collected[i] != collected[i - 1]) {
+                collected[distinctCount++] = collected[i];
+            }
+        }
+        return Arrays.copyOf(collected, distinctCount);
+    }
+
+    /**
+     * Gets the number of direct children of a genre, or of the virtual root
+     * @param genreId the id of the genre, or NO_PARENT for the root
+     * @return the child count
+     */
+    public int childCount(int genreId) {
+        if (genreId == NO_PARENT) {
+            return rootIds.length();
+        }
+        return childOffsets.get(genreId + 1) - childOffsets.get(genreId);
+    }
+
+    /**
+     * Gets a direct child of a genre, or of the virtual root
+     * @param genreId the id of the genre, or NO_PARENT for the root
+     * @param position the position of the child, ordered by name
+     * @return the child id
+     */
+    public int childAt(int genreId, int position) {
+        if (genreId == NO_PARENT) {
+            return rootIds.get(position);
+        }
+        return childIds.get(childOffsets.get(genreId) + position);
+    }
+
+    /**
+     * Finds the position of a child under its parent
+     * @param genreId the id of the parent, or NO_PARENT for the root
+     * @param childId the id of the child
+     * @return the position of the child, or -1 if it is not a direct child
+     */
+    public int positionOfChild(int genreId, int childId) {
+        if (genreId == NO_PARENT) {
+            return rootIds.binarySearch(0, rootIds.length(), childId);
+        }
+        int start = childOffsets.get(genreId);
+        int position = childIds.binarySearch(start, childOffsets.get(genreId + 1), childId);
+        return position >= 0 ? position - start : -1;
+    }
+
+    /**
+     * Gets a genre and all of its descendants
+     * @param genreId the id of the subtree root
+     * @return the ids in the subtree, in depth-first order
+     */
+    public int[] subtreeIds(int genreId) {
+        int start = preorderPositions.get(genreId);
+        int[] subtree = new int[subtreeEnds.get(genreId) - start];
+        for (int i = 0; i < subtree.length; i++) {
+            subtree[i] = preorderGenreIds.get(start + i);
+        }
+        return subtree;
+    }
+
+    /**
+     * Gets the position of a genre in the depth-first preorder of the tree
+     * @param genreId the id of the genre
+     * @return the preorder position, where the subtree of the genre starts
+     */
+    public int preorderOf(int genreId) {
+        return preorderPositions.get(genreId);
+    }
+
+    /**
+     * Gets the end of the preorder range covered by a genre's subtree
+     * @param genreId the id of the genre
+     * @return the first preorder position after the subtree, exclusive
+     */
+    public int subtreeEndOf(int genreId) {
+        return subtreeEnds.get(genreId);
+    }
+
+    /**
+     * Gets the genre at a preorder position
+     * @param position the preorder position
+     * @return the genre id
+     */
+    public int genreAtPreorder(int position) {
+        return preorderGenreIds.get(position);
+    }
+
+    /**
+     * Checks in constant time whether a genre is below another, like es_subclase_de/2
+     * @param genreId the id of the possible descendant
+     * @param ancestorId the id of the possible ancestor
+     * @return true if the genre is a direct or indirect subgenre of the ancestor
+     */
+    public boolean isDescendantOf(int genreId, int ancestorId) {
+        int position = preorderPositions.get(genreId);
+        return position > preorderPositions.get(ancestorId) && position < subtreeEnds.get(ancestorId);
+    }
+
+    /**
+     * Gets the chain of genres from the top level down to a genre. Cycles
+     * are cut when the index is built, so the walk always ends.
+     * @param genreId the id of the genre
+     * @return the ids from the top-level ancestor to the genre itself
+     */
+    public int[] pathFromRoot(int genreId) {
+        int length = 0;
+        for (int currentId = genreId; currentId != NO_PARENT; currentId = parentIds.get(currentId)) {
+            length++;
+        }
+
+        int[] path = new int[length];
+        int currentId = genreId;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = currentId;
+            currentId = parentIds.get(currentId);
+        }
+        return path;
+    }
+
+    /**
+     * Finds genres whose name contains the given text, ignoring case and underscores
+     * @param searchText the text to look for
+     * @return the ids of matching genres, ordered by name
+     */
+    public int[] findByName(String searchText) {
+        String normalizedSearch = normalizeName(searchText);
+        if (normalizedSearch.isEmpty()) {
+            return new int[0];
+        }
+
+        int[] matches = new int[size()];
+        int matchCount = 0;
+        for (int id = 0; id < matches.length; id++) {
+            if (normalizeName(genreNames.get(id)).contains(normalizedSearch)) {
+                matches[matchCount++] = id;
+            }
+        }
+        return Arrays.copyOf(matches, matchCount);
+    }
+
+    /**
+     * Normalizes a genre name for text matching
+     */
+    private static String normalizeName(String name) {
+        return name.trim().replace('_', ' ').toLowerCase();
+    }
+
+    /**
+     * One frame/4 fact as read from the knowledge base
+     */
+    public static final class Frame {
+
+        private final String name;
+        private final String parent;
+        private final String[] properties;
+        private final String description;
+
+        /**
+         * Creates a frame record
+         * @param name the frame name
+         * @param parent the name given in subclase_de
+         * @param properties the Prolog text of each direct property
+         * @param description the description text
+         */
+        public Frame(String name, String parent, String[] properties, String description) {
+            this.name = name;
+            this.parent = parent;
+            this.properties = properties;
+            this.description = description;
+        }
+
+        /**
+         * Gets the frame name
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the name given in subclase_de
+         * @return the parent name, "top" for top-level frames
+         */
+        public String getParent() {
+            return parent;
+        }
+
+        /**
+         * Gets the direct properties of the frame
+         * @return the Prolog text of each property
+         */
+        public String[] getProperties() {
+            return properties;
+        }
+
+        /**
+         * Gets the description text
+         * @return the description
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+}
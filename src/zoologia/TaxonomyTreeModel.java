@@ -0,0 +1,131 @@
+package zoologia;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * Lazy tree model over a TaxonomyIndex. Nodes are created only when the
+ * JTree asks for them, which happens when their parent is expanded.
+ */
+public class TaxonomyTreeModel implements TreeModel {
+
+    private final TaxonomyIndex taxonomyIndex;
+    private final GenreNode rootNode;
+    private final EventListenerList listenerList = new EventListenerList();
+
+    /**
+     * Creates a tree model for the given index
+     * @param taxonomyIndex the hierarchy to display
+     */
+    public TaxonomyTreeModel(TaxonomyIndex taxonomyIndex) {
+        this.taxonomyIndex = taxonomyIndex;
+        this.rootNode = new GenreNode(TaxonomyIndex.NO_PARENT, TaxonomyIndex.ROOT_NAME);
+    }
+
+    @Override
+    public Object getRoot() {
+        return rootNode;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        int childId = taxonomyIndex.childAt(((GenreNode) parent).genreId, index);
+        return new GenreNode(childId, taxonomyIndex.nameOf(childId));
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        return taxonomyIndex.childCount(((GenreNode) parent).genreId);
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return getChildCount(node) == 0;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // The taxonomy is read-only from the tree view
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (!(parent instanceof GenreNode) || !(child instanceof GenreNode)) {
+            return -1;
+        }
+        return taxonomyIndex.positionOfChild(((GenreNode) parent).genreId, ((GenreNode) child).genreId);
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener listener) {
+        listenerList.add(TreeModelListener.class, listener);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener listener) {
+        listenerList.remove(TreeModelListener.class, listener);
+    }
+
+    /**
+     * Builds the tree path that leads to a genre
+     * @param genreId the id of the genre
+     * @return the path from the root node to the genre node
+     */
+    public TreePath pathTo(int genreId) {
+        int[] genrePath = taxonomyIndex.pathFromRoot(genreId);
+        Object[] nodes = new Object[genrePath.length + 1];
+        nodes[0] = rootNode;
+        for (int i = 0; i < genrePath.length; i++) {
+            nodes[i + 1] = new GenreNode(genrePath[i], taxonomyIndex.nameOf(genrePath[i]));
+        }
+        return new TreePath(nodes);
+    }
+
+    /**
+     * Tree node holding a genre id. Nodes with the same id are equal,
+     * so they can be recreated on demand instead of kept in memory.
+     */
+    public static final class GenreNode {
+
+        private final int genreId;
+        private final String genreName;
+
+        private GenreNode(int genreId, String genreName) {
+            this.genreId = genreId;
+            this.genreName = genreName;
+        }
+
+        /**
+         * Gets the id of the genre in the taxonomy index
+         * @return the genre id
+         */
+        public int getGenreId() {
+            return genreId;
+        }
+
+        /**
+         * Gets the name of the genre
+         * @return the genre name
+         */
+        public String getGenreName() {
+            return genreName;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GenreNode && ((GenreNode) other).genreId == genreId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(genreId);
+        }
+
+        @Override
+        public String toString() {
+            return genreName;
+        }
+    }
+}
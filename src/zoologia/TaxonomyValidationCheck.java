@@ -0,0 +1,186 @@
+package zoologia;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the load-time validation and the cycle-safe hierarchy on a broken
+ * knowledge base. A synthetic KB is extended with a subclase_de cycle that
+ * has a subgenre, a frame that is its own parent, a frame with an undefined
+ * parent and a duplicated frame. The check then verifies the validation
+ * errors, pathFromRoot, the JTree model and the statistics, and that the
+ * unmodified KB has no errors. It needs no Prolog and exits with code 1 if
+ * any check fails.
+ *
+ * Usage: TaxonomyValidationCheck [--genres=500] [--fanout=3]
+ */
+public class TaxonomyValidationCheck {
+
+    private int failureCount;
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int genreCount = Integer.parseInt(options.getOrDefault("genres", "500"));
+        int fanout = Integer.parseInt(options.getOrDefault("fanout", "3"));
+
+        SyntheticKnowledgeBase generator = new SyntheticKnowledgeBase(genreCount, 3, fanout, 1);
+        TaxonomyValidationCheck check = new TaxonomyValidationCheck();
+        check.checkConsistentKnowledgeBase(generator.frames());
+        check.checkBrokenKnowledgeBase(generator);
+
+        if (check.failureCount > 0) {
+            System.out.println(check.failureCount + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * The generated KB is a proper tree and must produce no errors
+     */
+    private void checkConsistentKnowledgeBase(List<TaxonomyIndex.Frame> frames) {
+        TaxonomyIndex index = new TaxonomyIndex(frames);
+        check(index.validationErrors().isEmpty(), "consistent KB has no validation errors: " + index.validationErrors());
+        checkHierarchy("consistent KB", index);
+    }
+
+    /**
+     * Adds every kind of defect to the generated KB and checks how each is reported and placed
+     */
+    private void checkBrokenKnowledgeBase(SyntheticKnowledgeBase generator) {
+        List<TaxonomyIndex.Frame> frames = new ArrayList<>(generator.frames());
+        frames.add(frame("ciclo_a", "ciclo_b"));
+        frames.add(frame("ciclo_b", "ciclo_c"));
+        frames.add(frame("ciclo_c", "ciclo_a"));
+        frames.add(frame("bajo_ciclo", "ciclo_b"));
+        frames.add(frame("auto", "auto"));
+        frames.add(frame("huerfano", "inexistente"));
+        frames.add(frame(generator.genreName(1), generator.genreName(0)));
+
+        TaxonomyIndex index = new TaxonomyIndex(frames);
+        List<String> errors = index.validationErrors();
+        check(errors.size() == 4, "broken KB reports four errors: " + errors);
+        check(containsError(errors, "Frame " + generator.genreName(1) + " is defined 2 times"),
+                "duplicated frame is reported");
+        check(containsError(errors, "Frame huerfano is a subclass of inexistente, which is not defined"),
+                "undefined parent is reported");
+        check(containsError(errors, "cycle: auto -> auto;"), "self-loop is reported");
+        // Ids follow name order, so the walk from bajo_ciclo enters the cycle at ciclo_b
+        check(containsError(errors, "cycle: ciclo_b -> ciclo_c -> ciclo_a -> ciclo_b;"), "cycle is reported");
+
+        int cycleEntryId = index.idOf("ciclo_b");
+        check(index.parentOf(cycleEntryId) == TaxonomyIndex.NO_PARENT, "cycle entry is top-level");
+        check(index.parentOf(index.idOf("auto")) == TaxonomyIndex.NO_PARENT, "self-loop frame is top-level");
+        check(index.childCount(index.idOf("auto")) == 0, "self-loop frame is not its own child");
+        check(index.parentOf(index.idOf("huerfano")) == TaxonomyIndex.NO_PARENT, "orphan frame is top-level");
+        checkPath(index, "ciclo_a", "ciclo_b", "ciclo_a");
+        checkPath(index, "ciclo_c", "ciclo_b", "ciclo_a", "ciclo_c");
+        checkPath(index, "bajo_ciclo", "ciclo_b", "bajo_ciclo");
+        checkPath(index, "auto", "auto");
+        checkHierarchy("broken KB", index);
+    }
+
+    /**
+     * Checks that pathFromRoot, the tree model, the ancestor table and the
+     * statistics describe the same tree and that it covers every genre once
+     */
+    private void checkHierarchy(String label, TaxonomyIndex index) {
+        AncestorTable ancestorTable = new AncestorTable(index);
+        KnowledgeBaseStatistics statistics = new KnowledgeBaseStatistics(index, ancestorTable, 1);
+        TaxonomyTreeModel treeModel = new TaxonomyTreeModel(index);
+
+        boolean pathsValid = true;
+        boolean treePathsValid = true;
+        for (int genreId = 0; genreId < index.size(); genreId++) {
+            int[] path = index.pathFromRoot(genreId);
+            pathsValid &= path.length == ancestorTable.depthOf(genreId)
+                    && path.length == statistics.depthOf(genreId)
+                    && path[path.length - 1] == genreId
+                    && index.parentOf(path[0]) == TaxonomyIndex.NO_PARENT;
+            for (int i = 1; i < path.length; i++) {
+                pathsValid &= index.parentOf(path[i]) == path[i - 1];
+            }
+
+            Object[] nodes = treeModel.pathTo(genreId).getPath();
+            for (int i = 1; i < nodes.length; i++) {
+                int position = treeModel.getIndexOfChild(nodes[i - 1], nodes[i]);
+                treePathsValid &= position >= 0 && treeModel.getChild(nodes[i - 1], position).equals(nodes[i]);
+            }
+        }
+        check(pathsValid, label + ": every path runs from a top-level genre down its parents, as deep as its depth");
+        check(treePathsValid, label + ": every path leads through the tree model");
+
+        // Walk the tree model from its root; a cycle or a missing genre would show in the counts
+        int[] visits = new int[index.size()];
+        List<Object> pending = new ArrayList<>();
+        pending.add(treeModel.getRoot());
+        while (!pending.isEmpty()) {
+            Object node = pending.remove(pending.size() - 1);
+            for (int i = 0; i < treeModel.getChildCount(node) && pending.size() <= index.size(); i++) {
+                Object child = treeModel.getChild(node, i);
+                visits[((TaxonomyTreeModel.GenreNode) child).getGenreId()]++;
+                pending.add(child);
+            }
+        }
+        boolean visitedOnce = true;
+        for (int visitCount : visits) {
+            visitedOnce &= visitCount == 1;
+        }
+        check(visitedOnce, label + ": the tree model shows every genre exactly once");
+
+        int[] depthHistogram = statistics.getDepthHistogram();
+        int[] fanOutHistogram = statistics.getFanOutHistogram();
+        int histogramTotal = 0;
+        int childTotal = 0;
+        for (int depth = 0; depth < depthHistogram.length; depth++) {
+            histogramTotal += depthHistogram[depth];
+        }
+        for (int children = 0; children < fanOutHistogram.length; children++) {
+            childTotal += children * fanOutHistogram[children];
+        }
+        check(depthHistogram[0] == 0 && histogramTotal == index.size(),
+                label + ": every genre is counted at a depth of at least 1");
+        check(childTotal == index.size() - index.childCount(TaxonomyIndex.NO_PARENT),
+                label + ": the fan-out counts every genre below the top level once");
+    }
+
+    /**
+     * Checks the path from the top level to a genre, given by names
+     */
+    private void checkPath(TaxonomyIndex index, String genreName, String... expectedNames) {
+        int[] path = index.pathFromRoot(index.idOf(genreName));
+        String[] names = new String[path.length];
+        for (int i = 0; i < path.length; i++) {
+            names[i] = index.nameOf(path[i]);
+        }
+        check(String.join(" > ", names).equals(String.join(" > ", expectedNames)),
+                "path to " + genreName + " is " + String.join(" > ", expectedNames) + ", got " + String.join(" > ", names));
+    }
+
+    private static TaxonomyIndex.Frame frame(String name, String parent) {
+        return new TaxonomyIndex.Frame(name, parent, new String[]{"tiene(" + name + ")"}, "");
+    }
+
+    private static boolean containsError(List<String> errors, String text) {
+        for (String error : errors) {
+            if (error.contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void check(boolean condition, String description) {
+        System.out.println((condition ? "PASS  " : "FAIL  ") + description);
+        if (!condition) {
+            failureCount++;
+        }
+    }
+}
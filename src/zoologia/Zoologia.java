@@ -1,5 +1,6 @@
 package zoologia;
 
+import java.awt.GraphicsEnvironment;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
@@ -7,23 +8,86 @@ import javax.swing.UIManager;
  * Main application class for the Music Genre Explorer system.
  * This application allows users to explore musical genres through
  * frame-based knowledge representation and inheritance.
+ *
+ * With -Dzoologia.exitWhenReady=true the application exits as soon as
+ * startup is complete, after timing one round of first queries. Without a
+ * display only the service is started. Both are used by the AppCDS training
+ * run and by StartupBenchmark.
  */
 public class Zoologia {
 
+    /** System property that makes the application exit once it is ready */
+    public static final String EXIT_WHEN_READY_PROPERTY = "zoologia.exitWhenReady";
+
     public static void main(String[] args) {
+        StartupProfiler startupProfiler = new StartupProfiler();
+        if (GraphicsEnvironment.isHeadless()) {
+            startService(startupProfiler);
+            return;
+        }
         try {
             UIManager.setLookAndFeel(UIManager.getCrossPlatformLookAndFeelClassName());
         } catch (Exception e) {
             System.err.println("Could not set system Look and Feel");
         }
-        
+
         SwingUtilities.invokeLater(() -> {
             try {
-                new MusicGenreGUI().setVisible(true);
+                new MusicGenreGUI(startupProfiler).setVisible(true);
             } catch (Exception e) {
                 System.err.println("Error starting application: " + e.getMessage());
                 e.printStackTrace();
             }
         });
     }
+
+    /**
+     * Checks whether the application should exit once startup is complete
+     * @return true if zoologia.exitWhenReady is true
+     */
+    public static boolean isExitWhenReady() {
+        return Boolean.getBoolean(EXIT_WHEN_READY_PROPERTY);
+    }
+
+    /**
+     * Times the first round of queries after startup, prints it and exits
+     * @param musicGenreService the started service
+     */
+    public static void probeAndExit(MusicGenreService musicGenreService) {
+        long startTime = System.nanoTime();
+        int calls = new ServiceWarmup(musicGenreService).runRound();
+        System.out.println(String.format("First query round:     %6d ms (%d calls)",
+                (System.nanoTime() - startTime) / 1_000_000, calls));
+        System.exit(0);
+    }
+
+    /**
+     * Starts the service without a window: loads the knowledge base, builds
+     * the indexes the window would build, warms up if requested and prints
+     * the startup report
+     */
+    private static void startService(StartupProfiler startupProfiler) {
+        MusicGenreService musicGenreService = new MusicGenreService();
+        startupProfiler.run("Consult Prolog files", () -> {
+            musicGenreService.loadKnowledgeBase("inference_engine.pl");
+            musicGenreService.loadKnowledgeBase("knowledge_base.pl");
+            musicGenreService.loadKnowledgeBase("queries.pl");
+        });
+        startupProfiler.time("Retrieve genre list", musicGenreService::getAllMusicGenres);
+        startupProfiler.time("Retrieve property list", musicGenreService::getAllAvailableProperties);
+        startupProfiler.time("Build taxonomy index", musicGenreService::getTaxonomyIndex);
+        startupProfiler.time("Build description index", musicGenreService::getDescriptionIndex);
+        startupProfiler.time("Build ancestor table", musicGenreService::getAncestorTable);
+        startupProfiler.time("Count property facets",
+            () -> musicGenreService.getPropertyFacetCounts(new String[0], "todas"));
+        if (ServiceWarmup.isEnabled()) {
+            startupProfiler.run("Warm up service",
+                () -> new ServiceWarmup(musicGenreService).run(ServiceWarmup.roundsFromSystemProperty()));
+        }
+        startupProfiler.markInteractive();
+        System.out.println(startupProfiler.formatReport());
+        if (isExitWhenReady()) {
+            probeAndExit(musicGenreService);
+        }
+    }
 }